@@ -25,7 +25,6 @@
 package org.biouno.unochoice;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,9 +32,12 @@ import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.biouno.unochoice.model.Script;
 import org.kohsuke.stapler.bind.JavaScriptMethod;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.json.JsonHttpResponse;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Util;
+import jenkins.util.SystemProperties;
 
 /**
  * Base class for cascadable parameters, providing basic and utility methods.
@@ -49,6 +51,16 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
      * Serial UID. 
      */
     private static final long serialVersionUID = 3795727126307053346L;
+    /**
+     * Delay, in milliseconds, the browser waits for the referenced parameters to stop changing before updating
+     * a parameter that does not configure its own delay. Defaults to {@code 0}, updating parameters on every
+     * change, as before.
+     *
+     * @since 2.8.9
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int DEFAULT_DEBOUNCE = SystemProperties.getInteger(
+            AbstractCascadableParameter.class.getName() + ".defaultDebounce", 0);
     /**
      * Map with parameters in the UI.
      */
@@ -59,6 +71,14 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
      * Referenced parameters.
      */
     private final String referencedParameters;
+    /**
+     * Referenced parameters, parsed once.
+     */
+    private transient volatile String[] referencedParametersArray;
+    /**
+     * Delay, in milliseconds, before updating this parameter after a referenced parameter changed.
+     */
+    private Integer debounce;
 
     /**
      * Create a new abstract cascadable parameter.
@@ -97,6 +117,37 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
         return referencedParameters;
     }
 
+    /**
+     * @return delay, in milliseconds, before updating this parameter after a referenced parameter changed, or
+     *         {@code null} for the {@link #DEFAULT_DEBOUNCE default delay}
+     * @since 2.8.9
+     */
+    public Integer getDebounce() {
+        return debounce;
+    }
+
+    /**
+     * Sets the delay the browser waits for the referenced parameters to stop changing before updating this
+     * parameter. Changes made during the delay, like typing in a text box, result in a single update, with the
+     * latest values.
+     *
+     * @param debounce delay in milliseconds, {@code 0} to update this parameter on every change, or {@code null}
+     *        for the default delay
+     * @since 2.8.9
+     */
+    @DataBoundSetter
+    public void setDebounce(Integer debounce) {
+        this.debounce = (debounce != null && debounce >= 0) ? debounce : null;
+    }
+
+    /**
+     * @return delay, in milliseconds, before updating this parameter after a referenced parameter changed
+     * @since 2.8.9
+     */
+    public int getEffectiveDebounce() {
+        return debounce != null ? debounce : Math.max(0, DEFAULT_DEBOUNCE);
+    }
+
     /*
      * (non-Javadoc)
      * @see org.biouno.unochoice.AbstractScriptableParameter#getParameters()
@@ -115,33 +166,9 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
     @Override
     @JavaScriptMethod
     public void doUpdate(String parameters) {
+        final Map<Object, Object> values = parseParameters(parameters);
         getParameters().clear();
-        final String[] params = parameters.split(SEPARATOR);
-        for (String param : params) {
-            final String[] nameValue = param.split(EQUALS);
-            if (nameValue.length == 1) {
-                final String name = nameValue[0].trim();
-                if (!name.isEmpty())
-                    getParameters().put(name, "");
-            } else if (nameValue.length == 2) {
-                final String name = nameValue[0];
-                final String value = nameValue[1];
-                getParameters().put(name, value);
-            } else if (nameValue.length > 2) {
-                // TBD: we can eliminate this branch by splitting only on the first EQUALS
-                final String name = nameValue[0];
-                final StringBuilder sb = new StringBuilder();
-                // rebuild the rest of the string, skipping the first value
-                for (int i = 1; i < nameValue.length; ++i) {
-                    sb.append(nameValue[i]);
-                    if (i+1 < nameValue.length) {
-                        sb.append(EQUALS);
-                    }
-                }
-                final String value = sb.toString();
-                getParameters().put(name, value);
-            }
-        }
+        getParameters().putAll(values);
         throw new JsonHttpResponse(null);
     }
 
@@ -152,12 +179,35 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
     @Override
     @JavaScriptMethod
     public List<Object> getChoicesForUI() {
-        Map<Object, Object> mapResult = getChoices(getParameters());
-        return Arrays.asList(mapResult.values(), mapResult.keySet());
+        return Choice.toUI(getRenderedChoices(getChoiceList(getParameters())));
+    }
+
+    /**
+     * Exposed to the UI. Evaluates the choices for the given referenced parameter values, and returns them like
+     * {@link #getChoicesForUI()}, in a single call. Unlike {@link #doUpdate(String)}, the values are not stored in
+     * this parameter, which is shared by every user of the job, so concurrent evaluations cannot see each other's
+     * values.
+     *
+     * @param parameters referenced parameter values, as sent to {@link #doUpdate(String)}
+     * @return list with the labels and the values of the choices, and the indexes of the selected and of the
+     *         disabled ones
+     * @since 2.8.9
+     */
+    @JavaScriptMethod
+    public List<Object> evaluateChoicesForUI(String parameters) {
+        return Choice.toUI(getRenderedChoices(getChoiceList(parseParameters(parameters))));
     }
 
     public String[] getReferencedParametersAsArray() {
-        String referencedParameters = this.getReferencedParameters();
+        String[] array = referencedParametersArray;
+        if (array == null) {
+            array = parseReferencedParameters(this.getReferencedParameters());
+            referencedParametersArray = array;
+        }
+        return array.clone();
+    }
+
+    private static String[] parseReferencedParameters(String referencedParameters) {
         if (StringUtils.isNotBlank(referencedParameters)) {
             String[] array = referencedParameters.split(",");
             List<String> list = new ArrayList<>();
@@ -29,18 +29,31 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.biouno.unochoice.model.Script;
+import org.biouno.unochoice.util.ChoicesPager;
+import org.biouno.unochoice.util.DefaultValueCache;
+import org.biouno.unochoice.util.OverlayMap;
+import org.biouno.unochoice.util.ScriptBulkhead;
 import org.biouno.unochoice.util.ScriptCallback;
+import org.biouno.unochoice.util.ScriptResultCache;
+import org.biouno.unochoice.util.SingleFlight;
 import org.biouno.unochoice.util.Utils;
 import org.kohsuke.stapler.Ancestor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.bind.JavaScriptMethod;
 
+import hudson.Util;
 import hudson.model.AbstractItem;
 import hudson.model.Job;
 import hudson.model.ParameterValue;
@@ -48,6 +61,7 @@ import hudson.model.Project;
 import hudson.model.Run;
 import hudson.model.StringParameterValue;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 
 /**
  * Base class for parameters with scripts.
@@ -82,6 +96,12 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
      * Constant used to add the parameter name in the environment variables map.
      */
     protected static final String JENKINS_PARAMETER_VARIABLE_NAME = "jenkinsParameter";
+    /**
+     * Default value strategies, for builds triggered without the UI.
+     */
+    public static final String DEFAULT_VALUE_EVALUATE = "DV_EVALUATE"; // default strategy
+    public static final String DEFAULT_VALUE_LAST_KNOWN = "DV_LAST_KNOWN";
+    public static final String DEFAULT_VALUE_STATIC = "DV_STATIC";
     /**
      * Number of visible items on the screen.
      */
@@ -98,6 +118,26 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
      * The project Full Name (including folder).
      */
     private final String projectFullName;
+    /**
+     * How long, in seconds, the script results are cached for. {@code null} or {@code 0} disables the cache.
+     */
+    private Integer cacheTtl;
+    /**
+     * Number of choices loaded at a time by single select lists. {@code null} loads every choice at once.
+     */
+    private Integer pageSize;
+    /**
+     * Whether the choices are filtered by the server, instead of the browser.
+     */
+    private boolean serverSideFiltering;
+    /**
+     * How the default value is found, {@code null} to evaluate the script.
+     */
+    private String defaultValueStrategy;
+    /**
+     * Default value used by the {@link #DEFAULT_VALUE_STATIC} strategy.
+     */
+    private String staticDefaultValue;
 
     /**
      * Inherited constructor.
@@ -153,7 +193,23 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
                 }
             }
         }
-        return null;
+        // threads evaluating parameters on behalf of a request, e.g. the pre-evaluation ones, and requests not
+        // made to the job, e.g. the cascade updates, get it from the context
+        return EvaluationContext.current().getJob();
+    }
+
+    /**
+     * Gets the full name of the job of this parameter, preferring the job of the current request.
+     *
+     * @return the job full name, or {@code null} if unknown
+     * @since 2.8.9
+     */
+    public String getProjectFullName() {
+        final AbstractItem parentItem = detectProject();
+        if (parentItem != null) {
+            return parentItem.getFullName();
+        }
+        return projectFullName;
     }
 
     /**
@@ -165,6 +221,235 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
         return script;
     }
 
+    /**
+     * Gets the number of seconds the script results are cached for.
+     *
+     * @return cache TTL in seconds, or {@code null} if not set
+     * @since 2.8.9
+     */
+    public Integer getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Sets the number of seconds the script results are cached for. Results are cached per referenced
+     * parameter values, so different values still trigger a new evaluation.
+     *
+     * @param cacheTtl cache TTL in seconds, {@code null} or {@code 0} to disable the cache
+     * @since 2.8.9
+     */
+    @DataBoundSetter
+    public void setCacheTtl(Integer cacheTtl) {
+        this.cacheTtl = (cacheTtl != null && cacheTtl > 0) ? cacheTtl : null;
+    }
+
+    /**
+     * @return {@code true} if the script results of this parameter are cached
+     * @since 2.8.9
+     */
+    public boolean isCacheEnabled() {
+        return cacheTtl != null && cacheTtl > 0;
+    }
+
+    /**
+     * Exposed to the UI. Discards the cached script results of this parameter, so that the next
+     * evaluation runs the script again.
+     *
+     * @since 2.8.9
+     */
+    @JavaScriptMethod
+    public void refreshChoices() {
+        ScriptResultCache.invalidate(getRandomName());
+        DefaultValueCache.invalidate(getRandomName());
+    }
+
+    /**
+     * @return the number of choices loaded at a time, or {@code null} if every choice is loaded at once
+     * @since 2.8.9
+     */
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of choices loaded at a time by single select lists. Choices are then loaded while the
+     * user scrolls, and filtered by the server, instead of being rendered all at once. Use it for scripts
+     * returning very large lists of choices.
+     *
+     * @param pageSize number of choices loaded at a time, {@code null} or {@code 0} to load every choice at once
+     * @since 2.8.9
+     */
+    @DataBoundSetter
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = (pageSize != null && pageSize > 0) ? Math.min(pageSize, ChoicesPager.MAX_PAGE_SIZE) : null;
+    }
+
+    /**
+     * @return {@code true} if filterable choices are filtered by the server
+     * @since 2.8.9
+     */
+    public boolean isServerSideFiltering() {
+        return serverSideFiltering;
+    }
+
+    /**
+     * Sets whether filterable choices are filtered by the server. The page then only renders the first
+     * {@link #getFilterLimit()} choices, and the browser asks the server for the best matches of the filter
+     * text, instead of receiving every choice and filtering them itself.
+     *
+     * @param serverSideFiltering {@code true} to filter the choices on the server
+     * @since 2.8.9
+     */
+    @DataBoundSetter
+    public void setServerSideFiltering(boolean serverSideFiltering) {
+        this.serverSideFiltering = serverSideFiltering;
+    }
+
+    /**
+     * @return how the default value of builds triggered without the UI is found, one of
+     *         {@link #DEFAULT_VALUE_EVALUATE}, {@link #DEFAULT_VALUE_LAST_KNOWN} or {@link #DEFAULT_VALUE_STATIC}
+     * @since 2.8.9
+     */
+    public String getDefaultValueStrategy() {
+        return defaultValueStrategy != null ? defaultValueStrategy : DEFAULT_VALUE_EVALUATE;
+    }
+
+    /**
+     * Sets how the default value is found when a build is triggered without the UI, e.g. by a timer, an SCM
+     * change, an upstream build or the REST API. {@link #DEFAULT_VALUE_EVALUATE} evaluates the script for every
+     * build. {@link #DEFAULT_VALUE_LAST_KNOWN} evaluates it for the first build, then uses the last known default
+     * value, evaluated again in the background, so that many builds triggered at once do not wait for the script.
+     * {@link #DEFAULT_VALUE_STATIC} never evaluates it, and uses {@link #getStaticDefaultValue()}.
+     *
+     * @param defaultValueStrategy default value strategy, {@code null} to evaluate the script
+     * @since 2.8.9
+     */
+    @DataBoundSetter
+    public void setDefaultValueStrategy(String defaultValueStrategy) {
+        this.defaultValueStrategy = DEFAULT_VALUE_LAST_KNOWN.equals(defaultValueStrategy)
+                || DEFAULT_VALUE_STATIC.equals(defaultValueStrategy) ? defaultValueStrategy : null;
+    }
+
+    /**
+     * @return the default value used by the {@link #DEFAULT_VALUE_STATIC} strategy, or {@code null} if not set
+     * @since 2.8.9
+     */
+    public String getStaticDefaultValue() {
+        return staticDefaultValue;
+    }
+
+    /**
+     * Sets the default value used by the {@link #DEFAULT_VALUE_STATIC} strategy. Multiple values of multi
+     * select lists and check boxes are separated by commas.
+     *
+     * @param staticDefaultValue static default value
+     * @since 2.8.9
+     */
+    @DataBoundSetter
+    public void setStaticDefaultValue(String staticDefaultValue) {
+        this.staticDefaultValue = Util.fixEmpty(staticDefaultValue);
+    }
+
+    /**
+     * @return the maximum number of choices displayed when filtering on the server: the page size, or
+     *         {@code 100} when choices are not loaded by pages
+     * @since 2.8.9
+     */
+    public int getFilterLimit() {
+        return pageSize != null ? pageSize : 100;
+    }
+
+    /**
+     * Gets the choices rendered with the page. When filtering on the server, only the first
+     * {@link #getFilterLimit()} choices are rendered, plus the selected ones, as the other choices are only
+     * displayed when they match a filter.
+     *
+     * @return choices to render
+     * @since 2.8.9
+     */
+    public List<Choice> getRenderedChoices() {
+        return getRenderedChoices(getChoiceList());
+    }
+
+    /**
+     * Gets the given choices that are rendered, as in {@link #getRenderedChoices()}.
+     *
+     * @param choices evaluated choices
+     * @return choices to render
+     * @since 2.8.9
+     */
+    protected List<Choice> getRenderedChoices(List<Choice> choices) {
+        final int limit = getFilterLimit();
+        if (!serverSideFiltering || choices.size() <= limit) {
+            return choices;
+        }
+        final List<Choice> rendered = new ArrayList<>(limit);
+        for (Choice choice : choices) {
+            if (rendered.size() < limit || choice.isSelected()) {
+                rendered.add(choice);
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Exposed to the UI. Gets a page of the choices of this parameter.
+     *
+     * @param cursor cursor returned with the previous page, or {@code null} to evaluate the script again
+     * @param offset index of the first choice, among the choices matching the filter
+     * @param limit maximum number of choices
+     * @param filter text the choice labels must contain, ignoring case, or blank for all the choices
+     * @param parameters referenced parameter values, as sent to {@code doUpdate}, used when the script is evaluated
+     *        again; {@code null} to use the values stored by the last {@code doUpdate}
+     * @return the page
+     * @see ChoicesPager#page(String, java.util.function.Supplier, int, int, String)
+     * @since 2.8.9
+     */
+    @JavaScriptMethod
+    public JSONObject getChoicesPageForUI(String cursor, int offset, int limit, String filter, String parameters) {
+        return ChoicesPager.page(cursor,
+                () -> getChoiceList(parameters != null ? parseParameters(parameters) : getParameters()),
+                offset, limit, filter);
+    }
+
+    /**
+     * Parses the referenced parameter values sent by the UI, as {@code name=value} pairs separated by
+     * {@link #SEPARATOR}. Values may contain {@link #EQUALS}, as only the first one separates the name from the
+     * value. Names without a value are trimmed, and mapped to an empty value.
+     *
+     * <p>The text is parsed in a single pass, with indexes, so that only the names and the values are allocated.</p>
+     *
+     * @param parameters referenced parameter values
+     * @return a new map with the values, by parameter name
+     * @since 2.8.9
+     */
+    protected static Map<Object, Object> parseParameters(String parameters) {
+        final Map<Object, Object> values = new LinkedHashMap<>();
+        final int length = parameters.length();
+        int start = 0;
+        while (start < length) {
+            int end = parameters.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = start;
+            while (equals < end && parameters.charAt(equals) != '=') {
+                equals++;
+            }
+            if (equals < end - 1) {
+                values.put(parameters.substring(start, equals), parameters.substring(equals + 1, end));
+            } else {
+                // no value, or an empty one
+                final String name = parameters.substring(start, equals).trim();
+                if (!name.isEmpty()) {
+                    values.put(name, "");
+                }
+            }
+            start = end + SEPARATOR.length();
+        }
+        return values;
+    }
+
     /**
      * Gets the current parameters, be it before or after other referenced parameters triggered an update. Populates
      * parameters common to all evaluations, such as jenkinsProject, which is the current Jenkins project.
@@ -180,47 +465,62 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
      * @return Map with helper parameters
      */
     private Map<Object, Object> getHelperParameters() {
-        // map with parameters
-        final Map<Object, Object> helperParameters = new LinkedHashMap<>();
+        // Projects, builds and global node properties are resolved once per request, and shared by its parameters
+        final EvaluationContext context = EvaluationContext.current();
+
+        // map with parameters, on top of the global node properties, which are shared and not copied
+        final Map<String, Object> globalNodeProperties = context.getGlobalNodeProperties();
+        final Map<Object, Object> helperParameters = new OverlayMap<>(globalNodeProperties);
 
         // First, if the project name is set, we then find the project by its name, and inject into the map
         Job<?, ?> project = null;
         if (StringUtils.isNotBlank(this.projectFullName)) {
             // First try full name if exists
-            project = Jenkins.get().getItemByFullName(this.projectFullName, Project.class);
+            project = context.getProject("project:" + this.projectFullName,
+                    () -> Jenkins.get().getItemByFullName(this.projectFullName, Project.class));
         } else if (StringUtils.isNotBlank(this.projectName)) {
             // next we try to get the item given its name, which is more efficient
-            project = Utils.getProjectByName(this.projectName);
+            project = context.getProject("name:" + this.projectName, () -> Utils.getProjectByName(this.projectName));
         } else {
             // check whether the current thread has enough info to detect project
             // i.e. it serves a web request to the project build page
             final AbstractItem parentItem = detectProject();
             if (parentItem != null) {
-                project = Jenkins.get().getItemByFullName(parentItem.getFullName(), Job.class);
+                final String parentFullName = parentItem.getFullName();
+                project = context.getProject("job:" + parentFullName,
+                        () -> Jenkins.get().getItemByFullName(parentFullName, Job.class));
             }
         }
         // Last chance, if we were unable to get project from name and full name, try uuid
         if (project == null) {
             // otherwise, in case we don't have the item name, we iterate looking for a job that uses this UUID
-            project = Utils.findProjectByParameterUUID(this.getRandomName());
+            project = context.getProject("uuid:" + this.getRandomName(),
+                    () -> Utils.findProjectByParameterUUID(this.getRandomName()));
         }
         if (project != null) {
-            helperParameters.put(JENKINS_PROJECT_VARIABLE_NAME, project);
-            Run<?, ?> build = project.getLastBuild();
-            if (build != null && build.getHasArtifacts()) {
-                helperParameters.put(JENKINS_BUILD_VARIABLE_NAME, build);
+            putHelperParameter(helperParameters, globalNodeProperties, JENKINS_PROJECT_VARIABLE_NAME, project);
+            Run<?, ?> build = context.getLastBuildWithArtifacts(project);
+            if (build != null) {
+                putHelperParameter(helperParameters, globalNodeProperties, JENKINS_BUILD_VARIABLE_NAME, build);
             }
         }
 
         // Here we set the parameter name
-        helperParameters.put(JENKINS_PARAMETER_VARIABLE_NAME, this);
-
-        // Here we inject the global node properties
-        final Map<String, Object> globalNodeProperties = Utils.getGlobalNodeProperties();
-        helperParameters.putAll(globalNodeProperties);
+        putHelperParameter(helperParameters, globalNodeProperties, JENKINS_PARAMETER_VARIABLE_NAME, this);
         return helperParameters;
     }
 
+    /**
+     * Global node properties take precedence over the helper parameters with the same name, as they used to
+     * be copied over them.
+     */
+    private static void putHelperParameter(Map<Object, Object> helperParameters,
+            Map<String, Object> globalNodeProperties, String name, Object value) {
+        if (!globalNodeProperties.containsKey(name)) {
+            helperParameters.put(name, value);
+        }
+    }
+
     public Map<Object, Object> getChoices() {
         Map<Object, Object> choices = this.getChoices(getParameters());
         visibleItemCount = choices.size();
@@ -232,20 +532,11 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
      * @see org.biouno.unochoice.ScriptableParameter#getChoices(java.util.Map)
      */
     @Override
-    @SuppressWarnings("unchecked") // due to Web + Java and scripts integration
     public Map<Object, Object> getChoices(Map<Object, Object> parameters) {
         final Object value = eval(parameters);
-        if (value instanceof Map) {
-            Map<Object, Object> map = (Map<Object, Object>) value;
-            visibleItemCount = map.size();
-            return map;
-        }
-        if (value instanceof List) {
-            // here we take a list and return it as a map
-            final Map<Object, Object> map = new LinkedHashMap<>();
-            for (Object o : (List<Object>) value) {
-                map.put(o, o);
-            }
+        // lists are returned as maps, and choices as texts with the :selected and :disabled suffixes
+        final Map<Object, Object> map = Choice.toSuffixedMap(value);
+        if (map != null) {
             visibleItemCount = map.size();
             return map;
         }
@@ -256,6 +547,36 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
         return Collections.emptyMap();
     }
 
+    /**
+     * Gets the choices of this parameter, for the current referenced parameter values.
+     *
+     * @return choices
+     * @since 2.8.9
+     */
+    public List<Choice> getChoiceList() {
+        return getChoiceList(getParameters());
+    }
+
+    /**
+     * Evaluates the choices of this parameter. Unlike {@link #getChoices(Map)}, the result of the script is
+     * converted once to typed choices, decoding the {@code :selected} and {@code :disabled} suffixes of its texts,
+     * so that the flags are not parsed again when rendering the choices or finding the default value.
+     *
+     * @param parameters referenced parameter values
+     * @return choices, empty if the script does not return a list or a map
+     * @since 2.8.9
+     */
+    public List<Choice> getChoiceList(Map<Object, Object> parameters) {
+        final Object value = eval(parameters);
+        if (!(value instanceof Map || value instanceof List) && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(String.format("Script parameter with name '%s' is not an instance of java.util.Map. The "
+                    + "parameter value is %s", getName(), value));
+        }
+        final List<Choice> choices = Choice.fromScriptResult(value);
+        visibleItemCount = choices.size();
+        return choices;
+    }
+
     public String getChoicesAsString() {
         return getChoicesAsString(getParameters());
     }
@@ -267,13 +588,74 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
         return "";
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     private Object eval(Map<Object, Object> parameters) {
+        final CompletableFuture<Object> preEvaluated = ParameterPreEvaluator.claim(this, parameters);
+        if (preEvaluated != null) {
+            try {
+                return preEvaluated.get(ParameterPreEvaluator.WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | CancellationException e) {
+                LOGGER.log(Level.FINE, "Pre-evaluation failed, evaluating the script again", e);
+            } catch (TimeoutException e) {
+                LOGGER.log(Level.FINE, "Pre-evaluation of {0} is taking too long, evaluating the script again",
+                        getName());
+                // not waiting for the pre-evaluation, in flight with the same key, again
+                return evaluate(parameters, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.log(Level.FINE, "Interrupted while waiting for the pre-evaluation, evaluating the script", e);
+            }
+        }
+        return evaluate(parameters);
+    }
+
+    /**
+     * Evaluates the script, ignoring results pre-evaluated for the current request.
+     *
+     * @param parameters referenced parameter values
+     * @return script result
+     */
+    Object evaluate(Map<Object, Object> parameters) {
+        return evaluate(parameters, true);
+    }
+
+    private Object evaluate(Map<Object, Object> parameters, boolean singleFlight) {
+        final boolean cacheEnabled = isCacheEnabled() && script != null;
+        if (cacheEnabled) {
+            final Object cached = ScriptResultCache.get(getRandomName(), script, parameters);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (script == null) {
+            return run(parameters, false);
+        }
+        if (!singleFlight) {
+            return run(parameters, cacheEnabled);
+        }
+        // results are shared between users only if the parameter opted in, by enabling the cache
+        final String scope = cacheEnabled ? null : Jenkins.getAuthentication2().getName();
+        return SingleFlight.evaluate(getRandomName(), script, parameters, scope, () -> run(parameters, cacheEnabled));
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private Object run(Map<Object, Object> parameters, boolean cacheEnabled) {
         try {
             Map<Object, Object> scriptParameters = getHelperParameters();
             scriptParameters.putAll(parameters);
-            final ScriptCallback<Exception> callback = new ScriptCallback(getName(), script, scriptParameters);
-            return callback.call();
+            final Object project = scriptParameters.get(JENKINS_PROJECT_VARIABLE_NAME);
+            final String jobFullName = project instanceof Job ? ((Job<?, ?>) project).getFullName() : null;
+            final ScriptCallback<Exception> callback = new ScriptCallback(getName(), script, scriptParameters,
+                    jobFullName);
+            final Object value = callback.call();
+            if (cacheEnabled && value != null) {
+                ScriptResultCache.put(getRandomName(), script, parameters, value, cacheTtl);
+            }
+            return value;
+        } catch (ScriptBulkhead.RejectedException e) {
+            // expected under load, and already counted by the bulkhead
+            LOGGER.log(Level.FINE, String.format("Script of parameter %s not evaluated: %s", getName(),
+                    e.getMessage()));
+            return Collections.emptyMap();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error executing script for dynamic parameter", e);
             return Collections.emptyMap();
@@ -290,36 +672,64 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
             LOGGER.entering(AbstractUnoChoiceParameter.class.getName(), "getDefaultParameterValue");
         }
         final String name = getName();
-        String defaultValue = findDefaultValue(getChoices(Collections.emptyMap()));
-        final String value = ObjectUtils.toString(defaultValue, ""); // Jenkins doesn't like null parameter values
+        final String value;
+        if (DEFAULT_VALUE_STATIC.equals(defaultValueStrategy)) {
+            value = ObjectUtils.toString(staticDefaultValue, "");
+        } else if (DEFAULT_VALUE_LAST_KNOWN.equals(defaultValueStrategy)) {
+            value = DefaultValueCache.get(getRandomName(), script, this::evaluateDefaultValue);
+        } else {
+            value = evaluateDefaultValue();
+        }
         return new StringParameterValue(name, value);
     }
 
-    private static String findDefaultValue(Map<Object, Object> choices) {
+    private String evaluateDefaultValue() {
+        String defaultValue = findDefaultValue(getChoiceList(Collections.emptyMap()));
+        return ObjectUtils.toString(defaultValue, ""); // Jenkins doesn't like null parameter values
+    }
+
+    private static String findDefaultValue(List<Choice> choices) {
         if (choices == null || choices.isEmpty()) {
             return null;
         }
+        final String selected = findSelectedValues(choices);
+        if (selected == null) {
+            return choices.get(0).getValue();
+        }
+        return selected;
+    }
 
-        List<String> defaultValues = new ArrayList<>();
-        List<Entry<?, ?>> entries = new ArrayList<>(choices.entrySet());
-        for (Entry<?, ?> entry : entries) {
-            String valueText = ObjectUtils.toString(entry.getValue(), "");
-            if (Utils.isSelected(valueText)) {
-                String keyText = ObjectUtils.toString(entry.getKey(), "");
-                defaultValues.add(Utils.escapeSelectedAndDisabled(keyText));
-            }
+    /**
+     * Gets the value the UI would have for the given choices once rendered. A single select falls back to its
+     * first option, while the other types have no value when no option is selected.
+     *
+     * @param choices choices
+     * @param choiceType choice type
+     * @return value the UI would submit for the choices
+     */
+    static String findSelectedValue(List<Choice> choices, String choiceType) {
+        if (choices == null || choices.isEmpty()) {
+            return "";
         }
-        if (defaultValues.isEmpty()) {
-            String keyText = ObjectUtils.toString(entries.get(0).getKey(), "");
-            return ObjectUtils.toString(keyText, "");
+        if (choiceType == null || PARAMETER_TYPE_SINGLE_SELECT.equals(choiceType)) {
+            return findDefaultValue(choices);
         }
+        return ObjectUtils.toString(findSelectedValues(choices), "");
+    }
 
-        StringBuilder defaultValuesText = new StringBuilder();
-        for (String value : defaultValues) {
-            defaultValuesText.append(',');
-            defaultValuesText.append(value);
+    private static String findSelectedValues(List<Choice> choices) {
+        StringBuilder defaultValuesText = null;
+        for (Choice choice : choices) {
+            if (choice.isSelected()) {
+                if (defaultValuesText == null) {
+                    defaultValuesText = new StringBuilder();
+                } else {
+                    defaultValuesText.append(',');
+                }
+                defaultValuesText.append(choice.getValue());
+            }
         }
-        return defaultValuesText.substring(1);
+        return defaultValuesText != null ? defaultValuesText.toString() : null;
     }
 
     // --- type types
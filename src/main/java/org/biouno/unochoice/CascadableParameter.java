@@ -48,6 +48,9 @@ public interface CascadableParameter<T> extends ScriptableParameter<T> {
      * Evaluates a script and returns its result as a Map. List values are automatically handled and converted to
      * Maps too.
      *
+     * <p>Since 2.8.9, the result is a list with the labels and the values of the choices, followed by the indexes
+     * of the selected and of the disabled choices.</p>
+     *
      * @return script result as Map
      */
     List<Object> getChoicesForUI();
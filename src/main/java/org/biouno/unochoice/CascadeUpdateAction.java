@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+import org.biouno.unochoice.util.ParameterDependencyGraph;
+import org.kohsuke.stapler.bind.JavaScriptMethod;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * <p>Recomputes, in a single request, every parameter affected by the change of another parameter.</p>
+ *
+ * <p>Without it, the UI calls {@code doUpdate} and then {@code getChoicesForUI} for each reactive
+ * parameter, and then does the same for every parameter referencing it, which means two sequential
+ * round-trips per level of the cascade. Here the UI sends the values of the referenced parameters and the
+ * name of the parameter that changed. The server evaluates the affected parameters in dependency order,
+ * using the default selection of each re-evaluated parameter as its new value for the parameters
+ * downstream, and returns all the results at once.</p>
+ *
+ * <p>The value of a {@link DynamicReferenceParameter} is only known after its HTML is rendered by the
+ * browser. So parameters referencing one are not evaluated here. They are returned in {@code pending},
+ * and the UI updates them with the per-parameter methods.</p>
+ *
+ * <p>Parameters are evaluated with the same methods as the per-parameter ones, so the evaluations share the
+ * result cache, {@link org.biouno.unochoice.util.SingleFlight} and the limits of
+ * {@link org.biouno.unochoice.util.ScriptBulkhead}. As this action is not under the job URL, the job is set
+ * in the {@link EvaluationContext} of the evaluations, for the helper parameters of the scripts and the limit
+ * per job.</p>
+ *
+ * @since 2.8.9
+ */
+@Extension
+public class CascadeUpdateAction implements RootAction {
+
+    private static final Logger LOGGER = Logger.getLogger(CascadeUpdateAction.class.getName());
+
+    /**
+     * @return the action instance
+     */
+    public static CascadeUpdateAction get() {
+        return Jenkins.get().getExtensionList(RootAction.class).get(CascadeUpdateAction.class);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return "activeChoices";
+    }
+
+    /**
+     * Exposed to the UI. Re-evaluates every parameter affected by the change of a parameter.
+     *
+     * @param jobFullName full name of the job
+     * @param changedParameterName name of the parameter that changed
+     * @param formState JSON object with the current values of the parameters in the form
+     * @return JSON object with {@code results}, an array of {@code {name, choices}} (for choices and lists) or
+     * {@code {name, value}} (for text and HTML) in evaluation order, and {@code pending}, an array with the names
+     * of the parameters the UI must update itself
+     */
+    @JavaScriptMethod
+    public JSONObject updateCascade(String jobFullName, String changedParameterName, String formState) {
+        final Job<?, ?> job = Jenkins.get().getItemByFullName(jobFullName, Job.class);
+        if (job == null) {
+            throw new IllegalArgumentException("No job found with name " + jobFullName);
+        }
+        job.checkPermission(Item.BUILD);
+
+        final Map<String, String> values = new LinkedHashMap<>();
+        if (StringUtils.isNotBlank(formState)) {
+            final JSONObject json = JSONObject.fromObject(formState);
+            for (Object key : json.keySet()) {
+                values.put(key.toString(), json.optString(key.toString(), ""));
+            }
+        }
+
+        final JSONArray results = new JSONArray();
+        final JSONArray pending = new JSONArray();
+        final EvaluationContext context = EvaluationContext.create();
+        context.setJob(job);
+        try (EvaluationContext.Scope scope = context.enter()) {
+            update(job, changedParameterName, values, results, pending);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(String.format("Updated %d parameter(s) of %s after %s changed, %d pending",
+                    results.size(), jobFullName, changedParameterName, pending.size()));
+        }
+        final JSONObject response = new JSONObject();
+        response.put("results", results);
+        response.put("pending", pending);
+        return response;
+    }
+
+    /**
+     * Evaluates the parameters downstream of the changed one, in dependency order.
+     */
+    private static void update(Job<?, ?> job, String changedParameterName, Map<String, String> values,
+            JSONArray results, JSONArray pending) {
+        final Set<String> opaque = new HashSet<>();
+        final Set<String> skipped = new HashSet<>();
+        for (AbstractCascadableParameter parameter : ParameterDependencyGraph.of(job).getDownstream(changedParameterName)) {
+            final String name = parameter.getName();
+            final List<String> referenced = Arrays.asList(parameter.getReferencedParametersAsArray());
+            if (referenced.stream().anyMatch(skipped::contains)) {
+                // the parameter upstream will update this one when the UI updates it
+                skipped.add(name);
+                continue;
+            }
+            if (referenced.stream().anyMatch(opaque::contains)) {
+                skipped.add(name);
+                pending.add(name);
+                continue;
+            }
+            final Map<Object, Object> referencedValues = new LinkedHashMap<>();
+            for (String referencedName : referenced) {
+                referencedValues.put(referencedName, values.getOrDefault(referencedName, ""));
+            }
+            final JSONObject result = new JSONObject();
+            result.put("name", name);
+            if (parameter instanceof DynamicReferenceParameter && !isListElement(parameter.getChoiceType())) {
+                result.put("value", parameter.getChoicesAsString(referencedValues));
+                opaque.add(name);
+            } else {
+                final List<Choice> choices = parameter.getChoiceList(referencedValues);
+                result.put("choices", Choice.toUI(choices));
+                if (parameter instanceof DynamicReferenceParameter) {
+                    opaque.add(name);
+                } else {
+                    values.put(name, AbstractScriptableParameter.findSelectedValue(choices, parameter.getChoiceType()));
+                }
+            }
+            results.add(result);
+        }
+    }
+
+    private static boolean isListElement(String choiceType) {
+        return AbstractUnoChoiceParameter.ELEMENT_TYPE_ORDERED_LIST.equals(choiceType)
+                || AbstractUnoChoiceParameter.ELEMENT_TYPE_UNORDERED_LIST.equals(choiceType);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import org.biouno.unochoice.util.SuffixedValue;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+
+/**
+ * A choice of a parameter: the value submitted, the label displayed, and whether it is selected or disabled.
+ *
+ * <p>Scripts may return a list of choices, or a map whose values are choices, instead of appending the
+ * {@code :selected} and {@code :disabled} suffixes to the texts of a list or map, e.g.
+ * {@code return [new org.biouno.unochoice.Choice('main', 'Main branch', true, false), 'develop']}. The
+ * results of scripts are converted once to a list of choices, decoding the suffixes of the other texts, and
+ * the parameters, their views and the UI read the flags from it.</p>
+ *
+ * <p>This is not a record, as Jelly only reads the properties of beans.</p>
+ *
+ * @since 2.8.9
+ */
+public final class Choice {
+
+    private final String value;
+    private final String label;
+    private final boolean selected;
+    private final boolean disabled;
+
+    /**
+     * @param value value submitted when the choice is selected
+     * @param label label displayed
+     * @param selected whether the choice is selected by default
+     * @param disabled whether the choice cannot be selected by users
+     */
+    @Whitelisted
+    public Choice(@CheckForNull String value, @CheckForNull String label, boolean selected, boolean disabled) {
+        this.value = value != null ? value : "";
+        this.label = label != null ? label : this.value;
+        this.selected = selected;
+        this.disabled = disabled;
+    }
+
+    /**
+     * @param value value submitted when the choice is selected
+     * @param label label displayed
+     */
+    @Whitelisted
+    public Choice(@CheckForNull String value, @CheckForNull String label) {
+        this(value, label, false, false);
+    }
+
+    /**
+     * @param value value submitted when the choice is selected, and displayed
+     */
+    @Whitelisted
+    public Choice(@CheckForNull String value) {
+        this(value, value, false, false);
+    }
+
+    /**
+     * Converts a key and value of the map returned by a script, which may have the {@code :selected} and
+     * {@code :disabled} suffixes.
+     *
+     * @param key map key, or list element
+     * @param value map value, or list element, whose suffixes mark the choice
+     * @return choice
+     */
+    public static @NonNull Choice parse(@CheckForNull Object key, @CheckForNull Object value) {
+        final SuffixedValue label = SuffixedValue.parse(value);
+        final String text = key == value ? label.getValue() : SuffixedValue.parse(key).getValue();
+        return new Choice(text, label.getValue(), label.isSelected(), label.isDisabled());
+    }
+
+    /**
+     * Converts the result of a script to choices, once, when it is evaluated. Choices returned by the script are
+     * kept, and the other elements of a list, or entries of a map, are parsed with {@link #parse(Object, Object)}.
+     * Like before choices were typed, a list element, or a choice, is only added once for each value, and the
+     * keys of a map are the values submitted, including for the choices in the map, as in
+     * {@link #toSuffixedMap(Object)}.
+     *
+     * @param result script result
+     * @return choices, empty if the result is not a list or a map
+     */
+    public static @NonNull List<Choice> fromScriptResult(@CheckForNull Object result) {
+        if (result instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) result;
+            final List<Choice> choices = new ArrayList<>(map.size());
+            for (Entry<?, ?> entry : map.entrySet()) {
+                final Object value = entry.getValue();
+                if (value instanceof Choice) {
+                    final Choice choice = (Choice) value;
+                    choices.add(new Choice(SuffixedValue.parse(entry.getKey()).getValue(), choice.label,
+                            choice.selected, choice.disabled));
+                } else {
+                    choices.add(parse(entry.getKey(), value));
+                }
+            }
+            return choices;
+        }
+        if (result instanceof List) {
+            final List<?> list = (List<?>) result;
+            final Map<Object, Choice> choices = new LinkedHashMap<>();
+            for (Object element : list) {
+                if (element instanceof Choice) {
+                    choices.putIfAbsent(((Choice) element).getValue(), (Choice) element);
+                } else {
+                    choices.putIfAbsent(element, parse(element, element));
+                }
+            }
+            return new ArrayList<>(choices.values());
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Converts the result of a script to the map returned by {@link AbstractScriptableParameter#getChoices(Map)},
+     * where choices returned by the script are texts with the {@code :selected} and {@code :disabled} suffixes.
+     * A map without choices is returned as it is.
+     *
+     * @param result script result
+     * @return map of the choices, {@code null} if the result is not a list or a map
+     */
+    @SuppressWarnings("unchecked")
+    static @CheckForNull Map<Object, Object> toSuffixedMap(@CheckForNull Object result) {
+        if (result instanceof Map) {
+            final Map<Object, Object> map = (Map<Object, Object>) result;
+            if (map.values().stream().noneMatch(Choice.class::isInstance)) {
+                return map;
+            }
+            final Map<Object, Object> suffixed = new LinkedHashMap<>(map.size());
+            for (Entry<Object, Object> entry : map.entrySet()) {
+                final Object value = entry.getValue();
+                suffixed.put(entry.getKey(), value instanceof Choice ? ((Choice) value).toSuffixedText() : value);
+            }
+            return suffixed;
+        }
+        if (result instanceof List) {
+            final Map<Object, Object> map = new LinkedHashMap<>();
+            for (Object element : (List<Object>) result) {
+                if (element instanceof Choice) {
+                    map.putIfAbsent(((Choice) element).getValue(), ((Choice) element).toSuffixedText());
+                } else {
+                    map.put(element, element);
+                }
+            }
+            return map;
+        }
+        return null;
+    }
+
+    /**
+     * Converts choices to the list returned to the UI: their labels, their values, and the indexes of the
+     * selected and of the disabled choices.
+     *
+     * @param choices choices
+     * @return list with the labels, the values, and the indexes of the selected and of the disabled choices
+     */
+    static @NonNull List<Object> toUI(@NonNull List<Choice> choices) {
+        final List<String> labels = new ArrayList<>(choices.size());
+        final List<String> values = new ArrayList<>(choices.size());
+        final List<Integer> selected = new ArrayList<>();
+        final List<Integer> disabled = new ArrayList<>();
+        for (int i = 0; i < choices.size(); i++) {
+            final Choice choice = choices.get(i);
+            labels.add(choice.label);
+            values.add(choice.value);
+            if (choice.selected) {
+                selected.add(i);
+            }
+            if (choice.disabled) {
+                disabled.add(i);
+            }
+        }
+        return Arrays.asList(labels, values, selected, disabled);
+    }
+
+    /**
+     * @return the label, with the {@code :selected} and {@code :disabled} suffixes of its flags
+     */
+    @NonNull String toSuffixedText() {
+        if (!selected && !disabled) {
+            return label;
+        }
+        final StringBuilder text = new StringBuilder(label.length() + 18).append(label);
+        if (selected) {
+            text.append(SuffixedValue.SELECTED_SUFFIX);
+        }
+        if (disabled) {
+            text.append(SuffixedValue.DISABLED_SUFFIX);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return value submitted when the choice is selected
+     */
+    @Whitelisted
+    public @NonNull String getValue() {
+        return value;
+    }
+
+    /**
+     * @return label displayed
+     */
+    @Whitelisted
+    public @NonNull String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return {@code true} if the choice is selected by default
+     */
+    @Whitelisted
+    public boolean isSelected() {
+        return selected;
+    }
+
+    /**
+     * @return {@code true} if users cannot select the choice
+     */
+    @Whitelisted
+    public boolean isDisabled() {
+        return disabled;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Choice)) {
+            return false;
+        }
+        final Choice other = (Choice) obj;
+        return selected == other.selected && disabled == other.disabled && value.equals(other.value)
+                && label.equals(other.label);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(value, label, selected, disabled);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
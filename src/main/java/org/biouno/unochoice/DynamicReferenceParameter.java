@@ -130,6 +130,20 @@ public class DynamicReferenceParameter extends AbstractCascadableParameter {
         return getChoicesAsString(getParameters());
     }
 
+    /**
+     * Exposed to the UI. Evaluates the script for the given referenced parameter values, and returns its result as
+     * text, without storing the values in this parameter.
+     *
+     * @param parameters referenced parameter values, as sent to {@link #doUpdate(String)}
+     * @return script result as text
+     * @see #evaluateChoicesForUI(String)
+     * @since 2.8.9
+     */
+    @JavaScriptMethod
+    public String evaluateChoicesAsStringForUI(String parameters) {
+        return getChoicesAsString(parseParameters(parameters));
+    }
+
     // --- descriptor
 
     @Extension
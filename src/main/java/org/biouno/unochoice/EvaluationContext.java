@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import org.biouno.unochoice.util.Utils;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+/**
+ * <p>Values used to build the helper parameters of scripts ({@code jenkinsProject}, {@code jenkinsBuild}, and
+ * the global node properties), resolved once and shared by every parameter evaluated in the same HTTP request,
+ * or in the same batch of evaluations.</p>
+ *
+ * <p>The context of a request is stored in a request attribute. Threads evaluating parameters on behalf of a
+ * request, such as the ones of {@link ParameterPreEvaluator}, use {@link #enter()} to share it. Outside of a
+ * request, nothing is memoized, unless a context created with {@link #create()} is entered.</p>
+ *
+ * @since 2.8.9
+ */
+public final class EvaluationContext {
+
+    private static final String ATTRIBUTE = EvaluationContext.class.getName();
+
+    private static final ThreadLocal<EvaluationContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Context used outside of requests, that does not memoize anything.
+     */
+    private static final EvaluationContext NONE = new EvaluationContext(false);
+
+    private final boolean memoize;
+    private final Map<String, Optional<Job<?, ?>>> projects = new ConcurrentHashMap<>();
+    private final Map<Job<?, ?>, Optional<Run<?, ?>>> buildsWithArtifacts = new ConcurrentHashMap<>();
+    private volatile Map<String, Object> globalNodeProperties;
+    private volatile Job<?, ?> job;
+
+    private EvaluationContext(boolean memoize) {
+        this.memoize = memoize;
+    }
+
+    /**
+     * Gets the context of the current thread, or of the current request.
+     *
+     * @return context, never {@code null}
+     */
+    public static @NonNull EvaluationContext current() {
+        final EvaluationContext context = CURRENT.get();
+        if (context != null) {
+            return context;
+        }
+        final StaplerRequest2 request = Stapler.getCurrentRequest2();
+        if (request == null) {
+            return NONE;
+        }
+        synchronized (request) {
+            EvaluationContext requestContext = (EvaluationContext) request.getAttribute(ATTRIBUTE);
+            if (requestContext == null) {
+                requestContext = create();
+                request.setAttribute(ATTRIBUTE, requestContext);
+            }
+            return requestContext;
+        }
+    }
+
+    /**
+     * Creates a context, to share between the evaluations of a batch running outside of a request.
+     *
+     * @return new context
+     */
+    public static @NonNull EvaluationContext create() {
+        return new EvaluationContext(true);
+    }
+
+    /**
+     * Makes this context the context of the current thread, until the returned scope is closed.
+     *
+     * @return scope restoring the previous context when closed
+     */
+    public @NonNull Scope enter() {
+        final EvaluationContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Scope of a context entered by a thread.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Sets the job of the request of this context. Threads evaluating parameters on behalf of a request have no
+     * access to it, and use this job instead of looking up the job of the parameter. Ignored by the context used
+     * outside of requests, as it is shared.
+     *
+     * @param job job of the request
+     */
+    public void setJob(@CheckForNull Job<?, ?> job) {
+        if (memoize) {
+            this.job = job;
+        }
+    }
+
+    /**
+     * Gets the job of the request of this context.
+     *
+     * @return the job set with {@link #setJob(Job)}, or {@code null} if none
+     */
+    public @CheckForNull Job<?, ?> getJob() {
+        return job;
+    }
+
+    /**
+     * Gets a project, looking it up only once per context.
+     *
+     * @param key identifies the lookup, e.g. the project name and the type of item looked up
+     * @param lookup finds the project
+     * @return the project, or {@code null} if not found
+     */
+    public @CheckForNull Job<?, ?> getProject(@NonNull String key, @NonNull Supplier<Job<?, ?>> lookup) {
+        if (!memoize) {
+            return lookup.get();
+        }
+        return projects.computeIfAbsent(key, k -> Optional.ofNullable(lookup.get())).orElse(null);
+    }
+
+    /**
+     * Gets the last build of the given project, if it has artifacts.
+     *
+     * @param project project
+     * @return the last build, or {@code null} if there is none, or if it has no artifacts
+     */
+    public @CheckForNull Run<?, ?> getLastBuildWithArtifacts(@NonNull Job<?, ?> project) {
+        if (!memoize) {
+            return findLastBuildWithArtifacts(project);
+        }
+        return buildsWithArtifacts.computeIfAbsent(project, p -> Optional.ofNullable(findLastBuildWithArtifacts(p)))
+                .orElse(null);
+    }
+
+    private static Run<?, ?> findLastBuildWithArtifacts(Job<?, ?> project) {
+        final Run<?, ?> build = project.getLastBuild();
+        return build != null && build.getHasArtifacts() ? build : null;
+    }
+
+    /**
+     * Gets the global node properties. Callers must not modify the returned map.
+     *
+     * @return global node properties
+     * @see Utils#getGlobalNodeProperties()
+     */
+    public @NonNull Map<String, Object> getGlobalNodeProperties() {
+        if (!memoize) {
+            return Utils.getGlobalNodeProperties();
+        }
+        Map<String, Object> properties = globalNodeProperties;
+        if (properties == null) {
+            properties = Utils.getGlobalNodeProperties();
+            globalNodeProperties = properties;
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import org.biouno.unochoice.util.Utils;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.springframework.security.core.Authentication;
+
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>Evaluates the scripts of the parameters of a job in parallel, before the parameters page renders them.</p>
+ *
+ * <p>When rendering the parameters page, each parameter evaluates its script, with no referenced values,
+ * one after the other. These evaluations do not depend on each other. So when the first Active Choices
+ * parameter of a page is rendered, the scripts of the other parameters of the job are submitted to a
+ * shared executor. When the page reaches a parameter, it uses the result if the evaluation already started,
+ * waiting for it up to {@link #WAIT_TIMEOUT} milliseconds, or evaluates the script itself otherwise.</p>
+ *
+ * <p>Only the parameters rendered with the result of an evaluation without referenced values are
+ * pre-evaluated: parameters referencing other parameters are evaluated again with their values, and the
+ * choices of parameters with a page size are loaded by the browser.</p>
+ *
+ * <p>Disabled by default. Enable it with the system property
+ * {@code org.biouno.unochoice.ParameterPreEvaluator.enabled}. The number of scripts evaluated at the same
+ * time is bounded per request by {@code org.biouno.unochoice.ParameterPreEvaluator.threadsPerRequest}
+ * (default {@code 4}), and for the whole controller by
+ * {@code org.biouno.unochoice.ParameterPreEvaluator.threads} (default {@code 8}, read once).</p>
+ *
+ * @since 2.8.9
+ */
+public final class ParameterPreEvaluator {
+
+    private static final Logger LOGGER = Logger.getLogger(ParameterPreEvaluator.class.getName());
+
+    /**
+     * Whether parameters are evaluated in parallel before rendering. Not final so it can be changed from the
+     * script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static boolean ENABLED = SystemProperties.getBoolean(ParameterPreEvaluator.class.getName() + ".enabled");
+
+    /**
+     * Maximum number of scripts of the same request evaluated at the same time. Not final so it can be changed
+     * from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int THREADS_PER_REQUEST = SystemProperties.getInteger(
+            ParameterPreEvaluator.class.getName() + ".threadsPerRequest", 4);
+
+    /**
+     * Maximum time, in milliseconds, the page waits for a pre-evaluated result, before evaluating the script
+     * itself. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static long WAIT_TIMEOUT = SystemProperties.getLong(
+            ParameterPreEvaluator.class.getName() + ".waitTimeout", 10000L);
+
+    /**
+     * Maximum number of scripts evaluated at the same time, for all the requests.
+     */
+    private static final int THREADS = SystemProperties.getInteger(ParameterPreEvaluator.class.getName() + ".threads", 8);
+
+    private static final String ATTRIBUTE = ParameterPreEvaluator.class.getName();
+
+    private ParameterPreEvaluator() {}
+
+    /**
+     * Lazily created executor shared by all the requests.
+     */
+    private static final class ExecutorHolder {
+        private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Math.max(1, THREADS),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Active Choices parameter pre-evaluation"));
+    }
+
+    /**
+     * A parameter to evaluate, claimed either by an executor thread or by the request thread.
+     */
+    private static final class Evaluation {
+        private final AbstractScriptableParameter parameter;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Evaluation(AbstractScriptableParameter parameter) {
+            this.parameter = parameter;
+        }
+    }
+
+    /**
+     * Starts evaluating the parameters of the job of the current request, except the given one, which the
+     * request is about to evaluate itself. Does nothing if disabled, if the job cannot be found, or if it was
+     * already called in the current request.
+     *
+     * @param current parameter being rendered
+     */
+    public static void start(@NonNull AbstractScriptableParameter current) {
+        final StaplerRequest2 request = Stapler.getCurrentRequest2();
+        if (!ENABLED || request == null || request.getAttribute(ATTRIBUTE) != null) {
+            return;
+        }
+        final Job<?, ?> job = request.findAncestorObject(Job.class);
+        if (job == null) {
+            return;
+        }
+        final Map<String, Evaluation> evaluations = new ConcurrentHashMap<>();
+        final List<Evaluation> queue = new ArrayList<>();
+        for (ParameterDefinition definition : Utils.getAllParameterDefinitions(job)) {
+            if (definition instanceof AbstractScriptableParameter && definition != current
+                    && isRenderedInline((AbstractScriptableParameter) definition)) {
+                final Evaluation evaluation = new Evaluation((AbstractScriptableParameter) definition);
+                if (evaluations.putIfAbsent(evaluation.parameter.getRandomName(), evaluation) == null) {
+                    queue.add(evaluation);
+                }
+            }
+        }
+        request.setAttribute(ATTRIBUTE, evaluations);
+        if (queue.isEmpty()) {
+            return;
+        }
+        final Authentication authentication = Jenkins.getAuthentication2();
+        // the workers have no request to find the job from, so the job of the parameters is shared with them
+        final EvaluationContext context = EvaluationContext.current();
+        context.setJob(job);
+        final int workers = Math.min(queue.size(), Math.max(1, THREADS_PER_REQUEST));
+        try {
+            for (int i = 0; i < workers; i++) {
+                ExecutorHolder.EXECUTOR.execute(() -> evaluate(queue, authentication, context));
+            }
+        } catch (RejectedExecutionException e) {
+            // parameters not claimed by a running worker are evaluated by the request
+            LOGGER.log(Level.WARNING, "Failed to start the pre-evaluation of the parameters of " + job.getFullName(), e);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(String.format("Pre-evaluating %d parameter(s) of %s with %d worker(s)", queue.size(),
+                    job.getFullName(), workers));
+        }
+    }
+
+    /**
+     * @return whether the parameter is rendered with the result of an evaluation without referenced values
+     */
+    private static boolean isRenderedInline(AbstractScriptableParameter parameter) {
+        if (parameter.getPageSize() != null) {
+            return false;
+        }
+        return !(parameter instanceof AbstractCascadableParameter)
+                || ((AbstractCascadableParameter) parameter).getReferencedParametersAsArray().length == 0;
+    }
+
+    /**
+     * Evaluates, one after the other, the parameters not claimed yet, sharing the context of the request.
+     */
+    private static void evaluate(List<Evaluation> queue, Authentication authentication, EvaluationContext context) {
+        try (ACLContext ignored = ACL.as2(authentication); EvaluationContext.Scope scope = context.enter()) {
+            for (Evaluation evaluation : queue) {
+                if (evaluation.claimed.compareAndSet(false, true)) {
+                    try {
+                        evaluation.result.complete(evaluation.parameter.evaluate(Collections.emptyMap()));
+                    } catch (RuntimeException | Error e) {
+                        evaluation.result.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the pre-evaluated result of the given parameter, if an executor thread evaluated or is evaluating it.
+     * Otherwise, makes sure no executor thread will evaluate it, as the caller is going to.
+     *
+     * @param parameter parameter
+     * @param parameters referenced parameter values; only evaluations without values are pre-evaluated
+     * @return the result, completed or not, or {@code null} if the caller must evaluate the script
+     */
+    static @CheckForNull CompletableFuture<Object> claim(@NonNull AbstractScriptableParameter parameter,
+            @NonNull Map<Object, Object> parameters) {
+        if (!parameters.isEmpty()) {
+            return null;
+        }
+        final StaplerRequest2 request = Stapler.getCurrentRequest2();
+        if (request == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        final Map<String, Evaluation> evaluations = (Map<String, Evaluation>) request.getAttribute(ATTRIBUTE);
+        if (evaluations == null) {
+            return null;
+        }
+        final Evaluation evaluation = evaluations.remove(parameter.getRandomName());
+        if (evaluation == null || evaluation.parameter != parameter || evaluation.claimed.compareAndSet(false, true)) {
+            return null;
+        }
+        return evaluation.result;
+    }
+}
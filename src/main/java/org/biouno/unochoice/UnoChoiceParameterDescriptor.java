@@ -26,11 +26,19 @@ package org.biouno.unochoice;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
+import org.apache.commons.lang.StringUtils;
 import org.biouno.unochoice.model.Script;
+import org.biouno.unochoice.util.ParameterDependencyGraph;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.QueryParameter;
 
 import hudson.model.Descriptor;
+import hudson.model.Item;
+import hudson.model.Job;
 import hudson.model.ParameterDefinition.ParameterDescriptor;
+import hudson.util.FormValidation;
 
 /**
  * Descriptor for Uno Choice parameters.
@@ -44,4 +52,28 @@ public class UnoChoiceParameterDescriptor extends ParameterDescriptor {
         return new LinkedList<>(Script.all());
     }
 
+    /**
+     * Reports the cycles the referenced parameters of a cascadable parameter would create with the saved
+     * parameters of the job. Cycles are not rejected, their parameters are evaluated once, in declaration order.
+     *
+     * @param job job being configured
+     * @param name parameter name
+     * @param value referenced parameters
+     * @return a warning listing the parameters in a cycle, if any
+     * @since 2.8.9
+     */
+    public FormValidation doCheckReferencedParameters(@AncestorInPath Job<?, ?> job, @QueryParameter String name,
+            @QueryParameter String value) {
+        if (job == null || StringUtils.isBlank(name) || StringUtils.isBlank(value)
+                || !job.hasPermission(Item.CONFIGURE)) {
+            return FormValidation.ok();
+        }
+        final Set<String> cycle = ParameterDependencyGraph.findCycle(job, name.trim(), value);
+        if (cycle.isEmpty()) {
+            return FormValidation.ok();
+        }
+        return FormValidation.warning(String.format("Parameters %s reference each other in a cycle. They are "
+                + "evaluated once, in declaration order", cycle));
+    }
+
 }
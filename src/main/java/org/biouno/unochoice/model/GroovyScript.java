@@ -24,30 +24,41 @@
 
 package org.biouno.unochoice.model;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import hudson.model.Descriptor;
+import org.biouno.unochoice.Choice;
+import org.biouno.unochoice.util.CompiledScriptCache;
+import org.biouno.unochoice.util.OverlayMap;
 import org.biouno.unochoice.util.SafeHtmlExtendedMarkupFormatter;
+import org.biouno.unochoice.util.ScriptExecutor;
+import org.biouno.unochoice.util.Utils;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
 import org.jenkinsci.plugins.scriptsecurity.scripts.ApprovalContext;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import groovy.lang.Binding;
 import hudson.Extension;
 import hudson.PluginManager;
 import hudson.Util;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 
 /**
  * A Groovy script.
@@ -64,6 +75,21 @@ public class GroovyScript extends AbstractScript {
 
     private static final Logger LOGGER = Logger.getLogger(GroovyScript.class.getName());
 
+    /**
+     * Minimum number of values of a list, or entries of a map, returned by a sandboxed script, sanitized in
+     * parallel. {@code 0} or less to always sanitize the values on the request thread.
+     *
+     * @since 2.8.9
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int PARALLEL_SANITIZATION_THRESHOLD = SystemProperties.getInteger(
+            GroovyScript.class.getName() + ".parallelSanitizationThreshold", 10000);
+
+    /**
+     * Number of texts sanitized by each parallel task.
+     */
+    private static final int SANITIZATION_CHUNK_SIZE = 1024;
+
     /**
      * Script content.
      */
@@ -85,6 +111,17 @@ public class GroovyScript extends AbstractScript {
     @Nullable
     private SecureGroovyScript secureFallbackScript;
 
+    /**
+     * Timeout in seconds, {@code null} to use the default timeout.
+     */
+    @Nullable
+    private Integer timeout;
+
+    /**
+     * Whether environment variables are not expanded in the values of the parameters of the script.
+     */
+    private boolean disableEnvironmentInterpolation;
+
     @Deprecated
     public GroovyScript(String script, String fallbackScript) throws Descriptor.FormException {
         this(new SecureGroovyScript(script, false, null), new SecureGroovyScript(fallbackScript, false, null));
@@ -137,6 +174,47 @@ public class GroovyScript extends AbstractScript {
         return secureFallbackScript;
     }
 
+    /**
+     * @return the timeout in seconds, or {@code null} if the default timeout is used
+     * @since 2.8.9
+     */
+    @Nullable
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets how long, in seconds, the script may run before it is interrupted and the fallback script is used.
+     *
+     * @param timeout timeout in seconds, {@code null} or {@code 0} to use the default timeout
+     * @since 2.8.9
+     * @see ScriptExecutor#DEFAULT_TIMEOUT
+     */
+    @DataBoundSetter
+    public void setTimeout(@Nullable Integer timeout) {
+        this.timeout = (timeout != null && timeout > 0) ? timeout : null;
+    }
+
+    /**
+     * @return whether environment variables are not expanded in the values of the parameters of the script
+     * @since 2.8.9
+     */
+    public boolean isDisableEnvironmentInterpolation() {
+        return disableEnvironmentInterpolation;
+    }
+
+    /**
+     * Sets whether environment variables, such as {@code $HOME}, are not expanded in the values of the
+     * parameters of the script, which are then bound as they are.
+     *
+     * @param disableEnvironmentInterpolation {@code true} to bind the values without expanding them
+     * @since 2.8.9
+     */
+    @DataBoundSetter
+    public void setDisableEnvironmentInterpolation(boolean disableEnvironmentInterpolation) {
+        this.disableEnvironmentInterpolation = disableEnvironmentInterpolation;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -157,6 +235,66 @@ public class GroovyScript extends AbstractScript {
         if (secureScript == null) {
             return null;
         }
+        final ClassLoader cl = getClassLoader();
+        final int effectiveTimeout = ScriptExecutor.effectiveTimeout(timeout);
+        try {
+            final Binding context = createBinding(parameters);
+            Object returnValue = ScriptExecutor.call("script",
+                    () -> CompiledScriptCache.evaluate(secureScript, cl, context), effectiveTimeout);
+            // sanitize the text if running script in sandbox mode
+            if (secureScript.isSandbox()) {
+                returnValue = resolveTypeAndSanitize(returnValue);
+            }
+            return returnValue;
+        } catch (Exception re) {
+            if (this.secureFallbackScript != null) {
+                LOGGER.log(Level.FINEST, "Fallback to default script...", re);
+                // when no thread is left to run scripts, the fallback script runs on the calling thread
+                final int fallbackTimeout = re instanceof RejectedExecutionException ? 0 : effectiveTimeout;
+                return evalFallback(parameters, cl, fallbackTimeout);
+            } else {
+                LOGGER.log(Level.WARNING, "No fallback script configured for '%s'");
+                throw new RuntimeException("Failed to evaluate script: " + re.getMessage(), re);
+            }
+        }
+    }
+
+    /**
+     * Evaluates only the fallback script, e.g. when there is no capacity left to evaluate the script.
+     *
+     * @param parameters binding parameters
+     * @return output of the fallback script, or {@code null} if there is no fallback script
+     * @throws RuntimeException if the fallback script fails
+     * @since 2.8.9
+     */
+    public Object evalFallback(Map<String, String> parameters) throws RuntimeException {
+        if (secureFallbackScript == null) {
+            return null;
+        }
+        return evalFallback(parameters, getClassLoader(), ScriptExecutor.effectiveTimeout(timeout));
+    }
+
+    private Object evalFallback(Map<String, String> parameters, ClassLoader cl, int effectiveTimeout) {
+        try {
+            // a script that timed out may still be running, so the fallback gets its own binding
+            final Binding context = createBinding(parameters);
+            Object returnValue = ScriptExecutor.call("fallback script",
+                    () -> CompiledScriptCache.evaluate(secureFallbackScript, cl, context), effectiveTimeout);
+            // sanitize the text if running script in sandbox mode
+            if (secureFallbackScript.isSandbox()) {
+                returnValue = resolveTypeAndSanitize(returnValue);
+            }
+            return returnValue;
+        } catch (Exception e2) {
+            LOGGER.log(Level.WARNING, "Error executing fallback script", e2);
+            throw new RuntimeException("Failed to evaluate fallback script: " + e2.getMessage(), e2);
+        }
+    }
+
+    /**
+     * @return the class loader used to compile scripts
+     */
+    private static ClassLoader getClassLoader() {
         final Jenkins instance = Jenkins.getInstanceOrNull();
         ClassLoader cl = null;
         if (instance != null) {
@@ -170,47 +308,33 @@ public class GroovyScript extends AbstractScript {
         if (cl == null) {
             cl = Thread.currentThread().getContextClassLoader();
         }
+        return cl;
+    }
 
-        final Binding context = new Binding();
+    /**
+     * Creates the binding of the script, with the given parameters, expanding environment variables in values,
+     * unless disabled. The variables of the binding are an {@link OverlayMap} on top of the parameters, so they,
+     * and the global node properties they are on top of, are not copied. Only expanded values, and the removal
+     * of {@code null} values, are recorded in the overlay, as are the variables the script sets.
+     *
+     * @param parameters parameters, not modified
+     * @return binding
+     */
+    private Binding createBinding(Map<String, String> parameters) {
+        final Map<Object, Object> variables = new OverlayMap<>(parameters);
 
-        // @SuppressWarnings("unchecked")
-        final Map<String, String> envVars = System.getenv();
+        final Map<String, String> envVars = Utils.getSystemEnv();
         for (Entry<String, String> parameter : parameters.entrySet()) {
             Object value = parameter.getValue();
-            if (value != null) {
-                if (value instanceof String) {
-                    value = Util.replaceMacro((String) value, envVars);
-                }
-                context.setVariable(parameter.getKey(), value);
-            }
-        }
-
-        try {
-            Object returnValue = secureScript.evaluate(cl, context, null);
-            // sanitize the text if running script in sandbox mode
-            if (secureScript.isSandbox()) {
-                returnValue = resolveTypeAndSanitize(returnValue);
-            }
-            return returnValue;
-        } catch (Exception re) {
-            if (this.secureFallbackScript != null) {
-                try {
-                    LOGGER.log(Level.FINEST, "Fallback to default script...", re);
-                    Object returnValue = secureFallbackScript.evaluate(cl, context, null);
-                    // sanitize the text if running script in sandbox mode
-                    if (secureFallbackScript.isSandbox()) {
-                        returnValue = resolveTypeAndSanitize(returnValue);
-                    }
-                    return returnValue;
-                } catch (Exception e2) {
-                    LOGGER.log(Level.WARNING, "Error executing fallback script", e2);
-                    throw new RuntimeException("Failed to evaluate fallback script: " + e2.getMessage(), e2);
-                }
-            } else {
-                LOGGER.log(Level.WARNING, "No fallback script configured for '%s'");
-                throw new RuntimeException("Failed to evaluate script: " + re.getMessage(), re);
+            if (value == null) {
+                // as before, parameters without value are not bound
+                variables.remove(parameter.getKey());
+            } else if (!disableEnvironmentInterpolation && value instanceof String && ((String) value).indexOf('$') >= 0) {
+                // only values with a $ may contain variables to expand
+                variables.put(parameter.getKey(), Util.replaceMacro((String) value, envVars));
             }
         }
+        return new Binding(variables);
     }
 
     /**
@@ -225,46 +349,85 @@ public class GroovyScript extends AbstractScript {
      * <p>Finally, if it is a map, does similar as with the list, and calls replaceAll to
      * apply the sanitize function to each member of the map.</p>
      *
+     * <p>Lists and maps with at least {@link #PARALLEL_SANITIZATION_THRESHOLD} values or entries are sanitized
+     * in parallel, keeping the order of their values.</p>
+     *
      * @param returnValue a value of type String, List, or Map returned after the Groovy code was evaluated
      * @return sanitized value
      * @throws RuntimeException if the type of the given {@code returnValue} is not String, List, or Map
      */
-    private Object resolveTypeAndSanitize(Object returnValue) {
+    Object resolveTypeAndSanitize(Object returnValue) {
         if (returnValue instanceof CharSequence) {
-            return sanitizeString(returnValue);
+            return sanitizeString(SafeHtmlExtendedMarkupFormatter.newSanitizer(), returnValue);
         } else if (returnValue instanceof List) {
             List<?> list = (List<?>) returnValue;
-            return list.stream()
-                    .map(this::sanitizeString)
-                    .collect(Collectors.toList());
+            return new ArrayList<>(Arrays.asList(sanitizeAll(list.toArray())));
         } else if (returnValue instanceof Map) {
             @SuppressWarnings("unchecked")
             Map<Object, Object> map = (Map<Object, Object>) returnValue;
+            // keys and values, interleaved
+            final Object[] texts = new Object[map.size() * 2];
+            int i = 0;
+            for (Entry<Object, Object> entry : map.entrySet()) {
+                texts[i++] = entry.getKey();
+                texts[i++] = entry.getValue();
+            }
+            final Object[] sanitized = sanitizeAll(texts);
             Map<Object, Object> returnMap = new LinkedHashMap<>(map.size());
-            map.forEach((key, value) -> {
-                String newKey = sanitizeString(key);
-                String newValue = sanitizeString(value);
-                returnMap.put(newKey, newValue);
-            });
+            for (int j = 0; j < sanitized.length; j += 2) {
+                returnMap.put(sanitized[j], sanitized[j + 1]);
+            }
             return returnMap;
         }
         throw new RuntimeException("Return type of Groovy script must be a valid String, List, or Map");
     }
 
+    /**
+     * Sanitizes texts with one sanitizer, skipping the plain text ones, or in parallel chunks, each with its own
+     * sanitizer, when there are more than {@link #PARALLEL_SANITIZATION_THRESHOLD} of them.
+     *
+     * @param inputs texts, or {@link Choice}s, to sanitize
+     * @return sanitized texts and choices, in the same order
+     */
+    private static Object[] sanitizeAll(Object[] inputs) {
+        final Object[] sanitized = new Object[inputs.length];
+        final int threshold = PARALLEL_SANITIZATION_THRESHOLD;
+        if (threshold <= 0 || inputs.length < threshold) {
+            sanitizeRange(inputs, sanitized, 0, inputs.length);
+            return sanitized;
+        }
+        final int chunks = (inputs.length + SANITIZATION_CHUNK_SIZE - 1) / SANITIZATION_CHUNK_SIZE;
+        // each chunk writes its own range of the array, so the order is kept
+        IntStream.range(0, chunks).parallel().forEach(chunk -> sanitizeRange(inputs, sanitized,
+                chunk * SANITIZATION_CHUNK_SIZE, Math.min(inputs.length, (chunk + 1) * SANITIZATION_CHUNK_SIZE)));
+        return sanitized;
+    }
+
+    private static void sanitizeRange(Object[] inputs, Object[] sanitized, int from, int to) {
+        final SafeHtmlExtendedMarkupFormatter.Sanitizer sanitizer = SafeHtmlExtendedMarkupFormatter.newSanitizer();
+        for (int i = from; i < to; i++) {
+            if (inputs[i] instanceof Choice) {
+                // the flags of choices are kept, their texts are sanitized
+                final Choice choice = (Choice) inputs[i];
+                sanitized[i] = new Choice(sanitizeString(sanitizer, choice.getValue()),
+                        sanitizeString(sanitizer, choice.getLabel()), choice.isSelected(), choice.isDisabled());
+            } else {
+                sanitized[i] = sanitizeString(sanitizer, inputs[i]);
+            }
+        }
+    }
+
     /**
      * Sanitize a string using the plug-in safe HTML markup formatter.
+     * @param sanitizer sanitizer of the plug-in safe HTML markup formatter
      * @param input the input object
      * @return sanitized input, or {@code null} if the input is {@code null}
      */
-    private String sanitizeString(Object input) {
+    private static String sanitizeString(SafeHtmlExtendedMarkupFormatter.Sanitizer sanitizer, Object input) {
         if (input == null) {
             return null;
         }
-        try {
-            return SafeHtmlExtendedMarkupFormatter.INSTANCE.translate(input.toString());
-        } catch (IOException e) {
-            throw new RuntimeException(String.format("Failed to sanitize input due to: %s", e.getMessage()), e);
-        }
+        return sanitizer.sanitize(input.toString());
     }
 
     /*
@@ -290,6 +453,8 @@ public class GroovyScript extends AbstractScript {
         int result = 1;
         result = prime * result + ((secureFallbackScript == null) ? 0 : secureFallbackScript.hashCode());
         result = prime * result + ((secureScript == null) ? 0 : secureScript.hashCode());
+        result = prime * result + ((timeout == null) ? 0 : timeout.hashCode());
+        result = prime * result + (disableEnvironmentInterpolation ? 1231 : 1237);
         return result;
     }
 
@@ -312,6 +477,10 @@ public class GroovyScript extends AbstractScript {
                 return false;
         } else if (!secureFallbackScript.equals(other.secureFallbackScript))
             return false;
+        if (!Objects.equals(timeout, other.timeout))
+            return false;
+        if (disableEnvironmentInterpolation != other.disableEnvironmentInterpolation)
+            return false;
         if (secureScript == null) {
             return other.secureScript == null;
         }
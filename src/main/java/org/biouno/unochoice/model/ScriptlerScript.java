@@ -25,18 +25,25 @@
 package org.biouno.unochoice.model;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.Util;
+import hudson.XmlFile;
 import hudson.model.Descriptor;
 import hudson.model.ManagementLink;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import net.sf.json.JSONArray;
+import org.biouno.unochoice.util.OverlayMap;
 import org.biouno.unochoice.util.Utils;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.scriptler.ScriptlerManagement;
 import org.jenkinsci.plugins.scriptler.builder.ScriptlerBuilder;
 import org.jenkinsci.plugins.scriptler.config.Parameter;
 import org.jenkinsci.plugins.scriptler.config.Script;
+import org.jenkinsci.plugins.scriptler.config.ScriptlerConfiguration;
 import org.jenkinsci.plugins.scriptler.util.ScriptHelper;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -49,6 +56,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -64,6 +73,20 @@ public class ScriptlerScript extends AbstractScript {
      */
     private static final long serialVersionUID = 6600927513119226354L;
 
+    /**
+     * How long, in milliseconds, a converted script is used before checking whether the Scriptler script
+     * changed on disk. Changes made through Scriptler are seen immediately. Not final so it can be changed
+     * from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static long REVALIDATE_MILLIS = SystemProperties.getLong(
+            ScriptlerScript.class.getName() + ".revalidateMillis", 10_000L);
+
+    /**
+     * Scripts converted by {@link #toGroovyScript()}, by Scriptler script ID and options.
+     */
+    private static final Map<String, ConvertedScript> CONVERTED_SCRIPTS = new ConcurrentHashMap<>();
+
     /**
      * The ID of the Scriptler script.
      * @deprecated Not used now that we use the {@code ScriptlerBuilder}.
@@ -84,6 +107,11 @@ public class ScriptlerScript extends AbstractScript {
      */
     private final Boolean isSandboxed;
 
+    /**
+     * Whether environment variables are not expanded in the values of the parameters of the script.
+     */
+    private boolean disableEnvironmentInterpolation;
+
     /**
      * @param scriptlerBuilder Scriptler builder
      * @param isSandboxed whether this script must be sandboxed or not
@@ -187,6 +215,24 @@ public class ScriptlerScript extends AbstractScript {
         return isSandboxed;
     }
 
+    /**
+     * @return whether environment variables are not expanded in the values of the parameters of the script
+     * @since 2.8.9
+     */
+    public boolean isDisableEnvironmentInterpolation() {
+        return disableEnvironmentInterpolation;
+    }
+
+    /**
+     * @param disableEnvironmentInterpolation {@code true} to bind the values without expanding them
+     * @since 2.8.9
+     * @see GroovyScript#setDisableEnvironmentInterpolation(boolean)
+     */
+    @DataBoundSetter
+    public void setDisableEnvironmentInterpolation(boolean disableEnvironmentInterpolation) {
+        this.disableEnvironmentInterpolation = disableEnvironmentInterpolation;
+    }
+
     @Override
     public Object eval() {
         return eval(null);
@@ -198,20 +244,21 @@ public class ScriptlerScript extends AbstractScript {
      */
     @Override
     public Object eval(Map<String, String> parameters) {
-        final Map<String, String> envVars = Utils.getSystemEnv();
-        Map<String, String> evaledParameters = new LinkedHashMap<>(envVars);
+        // the environment variables are shared, not copied
+        final Map<String, String> evaledParameters = new OverlayMap<>(Utils.getSystemEnv());
+        final Map<String, String> scriptParameters = this.getParameters();
         // if we have any parameter that came from UI, let's eval and use them
         if (parameters != null && !parameters.isEmpty()) {
             // fill our map with the given parameters
             evaledParameters.putAll(parameters);
             // and now try to expand env vars
-            for (String key : this.getParameters().keySet()) {
-                String value = this.getParameters().get(key);
+            for (Map.Entry<String, String> entry : scriptParameters.entrySet()) {
+                String value = entry.getValue();
                 value = Util.replaceMacro(value, parameters);
-                evaledParameters.put(key, value);
+                evaledParameters.put(entry.getKey(), value);
             }
         } else {
-            evaledParameters.putAll(this.getParameters());
+            evaledParameters.putAll(scriptParameters);
         }
         return this.toGroovyScript().eval(evaledParameters);
     }
@@ -225,18 +272,77 @@ public class ScriptlerScript extends AbstractScript {
      * Jenkins administrator. In this case it won't use the Groovy Sandbox. This is useful if
      * the Groovy script needs access to API not available in the Sandbox (e.g. Grapes).</p>
      *
+     * <p>The conversion is shared by all the parameters using the same Scriptler script with the same options,
+     * so the script file is not read for every evaluation. It is converted again when Scriptler saves its
+     * configuration, or when the script file changed, which is checked every {@link #REVALIDATE_MILLIS}.
+     * Callers must not modify the returned GroovyScript.</p>
+     *
      * @return a GroovyScript
      */
     public GroovyScript toGroovyScript() {
+        final String key = getScriptlerScriptId() + ':' + this.isSandboxed + ':' + disableEnvironmentInterpolation;
+        final long now = System.nanoTime();
+        final ConvertedScript converted = CONVERTED_SCRIPTS.get(key);
+        if (converted != null && now - converted.validatedAt < TimeUnit.MILLISECONDS.toNanos(REVALIDATE_MILLIS)) {
+            return converted.groovyScript;
+        }
         final Script scriptler = ScriptHelper.getScript(getScriptlerScriptId(), true);
         if (scriptler == null) {
+            CONVERTED_SCRIPTS.remove(key);
             throw new RuntimeException("Missing required scriptler!");
         }
+        if (converted != null && Objects.equals(converted.source, scriptler.script)) {
+            converted.validatedAt = now;
+            return converted.groovyScript;
+        }
+        final GroovyScript groovyScript;
         try {
-            return new GroovyScript(new SecureGroovyScript(scriptler.script, this.isSandboxed, null), null);
+            groovyScript = new GroovyScript(new SecureGroovyScript(scriptler.script, this.isSandboxed, null), null);
         } catch (Descriptor.FormException e) {
             throw new RuntimeException("Failed to create GroovyScript", e);
         }
+        groovyScript.setDisableEnvironmentInterpolation(disableEnvironmentInterpolation);
+        CONVERTED_SCRIPTS.put(key, new ConvertedScript(scriptler.script, groovyScript, now));
+        return groovyScript;
+    }
+
+    /**
+     * A Scriptler script converted to a GroovyScript, and the source it was converted from.
+     */
+    private static final class ConvertedScript {
+        private final String source;
+        private final GroovyScript groovyScript;
+        private volatile long validatedAt;
+
+        private ConvertedScript(String source, GroovyScript groovyScript, long validatedAt) {
+            this.source = source;
+            this.groovyScript = groovyScript;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    /**
+     * Discards the converted scripts, so that the next evaluations read the Scriptler scripts again.
+     *
+     * @since 2.8.9
+     */
+    public static void clearConvertedScripts() {
+        CONVERTED_SCRIPTS.clear();
+    }
+
+    /**
+     * Discards the converted scripts when Scriptler saves its configuration, i.e. when scripts are added,
+     * edited or removed.
+     */
+    @Extension(optional = true)
+    public static final class ScriptlerConfigurationListener extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof ScriptlerConfiguration) {
+                clearConvertedScripts();
+            }
+        }
     }
 
     // --- descriptor
@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * <p>Finds the choices whose text contains a filter, ignoring case, without scanning every choice.</p>
+ *
+ * <p>Choices starting with the filter are found with a binary search over the choices sorted by text. The
+ * other choices containing the filter are found with an index of the trigrams (sequences of three characters)
+ * of the texts: only the choices having the rarest trigram of the filter are checked. The trigram index is
+ * built on the first search for a filter of three characters or more. Shorter filters scan the choices.</p>
+ *
+ * <p>Matches are ranked: choices starting with the filter first, then the other choices, each group in the
+ * original order of the choices.</p>
+ *
+ * @since 2.8.9
+ */
+public final class ChoicesIndex {
+
+    /**
+     * Lower case texts of the choices.
+     */
+    private final String[] texts;
+    /**
+     * Indexes of the choices, sorted by text.
+     */
+    private final int[] sorted;
+    /**
+     * Indexes of the choices containing each trigram, in ascending order. Built lazily.
+     */
+    private volatile Map<Long, int[]> trigrams;
+
+    /**
+     * @param texts texts of the choices
+     */
+    public ChoicesIndex(@NonNull String[] texts) {
+        this.texts = new String[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            this.texts[i] = texts[i].toLowerCase(Locale.ROOT);
+        }
+        this.sorted = IntStream.range(0, texts.length)
+                .boxed()
+                .sorted((a, b) -> this.texts[a].compareTo(this.texts[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Finds the choices containing the filter, ignoring case.
+     *
+     * @param filter filter
+     * @return indexes of the matching choices, ranked
+     */
+    public @NonNull int[] find(@NonNull String filter) {
+        final String text = filter.toLowerCase(Locale.ROOT);
+        if (text.isEmpty()) {
+            return IntStream.range(0, texts.length).toArray();
+        }
+        final int[] prefixMatches = findPrefix(text);
+        final int[] candidates = text.length() >= 3 ? rarestTrigram(text) : null;
+        final int[] matches = Arrays.copyOf(prefixMatches, candidates != null ? prefixMatches.length + candidates.length
+                : texts.length);
+        int count = prefixMatches.length;
+        final int limit = candidates != null ? candidates.length : texts.length;
+        for (int k = 0; k < limit; k++) {
+            final int i = candidates != null ? candidates[k] : k;
+            // choices starting with the filter were already found
+            if (!texts[i].startsWith(text) && texts[i].contains(text)) {
+                matches[count++] = i;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * @return indexes of the choices starting with the text, in ascending order
+     */
+    private int[] findPrefix(String text) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (texts[sorted[middle]].compareTo(text) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int end = low;
+        while (end < sorted.length && texts[sorted[end]].startsWith(text)) {
+            end++;
+        }
+        final int[] matches = Arrays.copyOfRange(sorted, low, end);
+        Arrays.sort(matches);
+        return matches;
+    }
+
+    /**
+     * @return indexes of the choices containing the rarest trigram of the text, in ascending order
+     */
+    private int[] rarestTrigram(String text) {
+        final Map<Long, int[]> index = getTrigrams();
+        int[] rarest = null;
+        for (int j = 0; j + 3 <= text.length(); j++) {
+            final int[] postings = index.get(trigram(text, j));
+            if (postings == null) {
+                return new int[0];
+            }
+            if (rarest == null || postings.length < rarest.length) {
+                rarest = postings;
+            }
+        }
+        return rarest;
+    }
+
+    private Map<Long, int[]> getTrigrams() {
+        Map<Long, int[]> index = trigrams;
+        if (index == null) {
+            synchronized (this) {
+                index = trigrams;
+                if (index == null) {
+                    index = buildTrigrams();
+                    trigrams = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private Map<Long, int[]> buildTrigrams() {
+        final Map<Long, int[]> postings = new HashMap<>();
+        final Map<Long, Integer> sizes = new HashMap<>();
+        for (int i = 0; i < texts.length; i++) {
+            final String text = texts[i];
+            for (int j = 0; j + 3 <= text.length(); j++) {
+                final Long key = trigram(text, j);
+                final int size = sizes.getOrDefault(key, 0);
+                int[] list = postings.get(key);
+                // choices are visited in order, so a repeated trigram of the same choice is the last one added
+                if (list != null && list[size - 1] == i) {
+                    continue;
+                }
+                if (list == null) {
+                    list = new int[4];
+                } else if (size == list.length) {
+                    list = Arrays.copyOf(list, size * 2);
+                }
+                list[size] = i;
+                postings.put(key, list);
+                sizes.put(key, size + 1);
+            }
+        }
+        postings.replaceAll((key, list) -> Arrays.copyOf(list, sizes.get(key)));
+        return postings;
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import org.apache.commons.lang.StringUtils;
+import org.biouno.unochoice.Choice;
+
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * <p>Serves the choices of a parameter one page at a time, so that parameters with very large lists of choices
+ * do not send and render every choice at once.</p>
+ *
+ * <p>The first page evaluates the choices and keeps them in a snapshot identified by an opaque cursor. The
+ * following pages, with the same cursor, are read from the snapshot, optionally filtered by a text matched
+ * against the choice labels, ignoring case, using a {@link ChoicesIndex}. Whether choices are selected or
+ * disabled is sent as indexes, so that neither the server nor the browser parse the {@code :selected} and
+ * {@code :disabled} suffixes again. Snapshots belong to the user who created them, expire
+ * {@code org.biouno.unochoice.util.ChoicesPager.ttlSeconds} (default {@code 300}) after their last use, and at
+ * most {@code org.biouno.unochoice.util.ChoicesPager.maxSnapshots} (default {@code 100}) are kept.</p>
+ *
+ * @since 2.8.9
+ */
+public final class ChoicesPager {
+
+    /**
+     * Seconds a snapshot is kept after it was last used. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int TTL_SECONDS = SystemProperties.getInteger(ChoicesPager.class.getName() + ".ttlSeconds", 300);
+
+    /**
+     * Maximum number of snapshots kept in memory. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int MAX_SNAPSHOTS = SystemProperties.getInteger(ChoicesPager.class.getName() + ".maxSnapshots", 100);
+
+    /**
+     * Maximum number of choices returned in a page.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * LRU map of snapshots by cursor. Access is guarded by the map monitor.
+     */
+    private static final Map<String, Snapshot> SNAPSHOTS = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+
+    private ChoicesPager() {}
+
+    /**
+     * Choices of a parameter, as evaluated for the first page.
+     */
+    private static final class Snapshot {
+        private final String owner;
+        private final Choice[] choices;
+        private volatile long lastAccess;
+        /**
+         * Indexes of the choices matching the last filter used, so that scrolling does not filter again.
+         */
+        private String lastFilter;
+        private int[] lastMatches;
+        /**
+         * Index of the choice labels, built on the first filter.
+         */
+        private ChoicesIndex index;
+
+        private Snapshot(String owner, List<Choice> choices) {
+            this.owner = owner;
+            this.choices = choices.toArray(new Choice[0]);
+            this.lastAccess = System.nanoTime();
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - lastAccess > TimeUnit.SECONDS.toNanos(TTL_SECONDS);
+        }
+
+        private synchronized int[] matches(String filter) {
+            if (filter.equals(lastFilter)) {
+                return lastMatches;
+            }
+            if (index == null) {
+                final String[] texts = new String[choices.length];
+                for (int i = 0; i < choices.length; i++) {
+                    texts[i] = choices[i].getLabel();
+                }
+                index = new ChoicesIndex(texts);
+            }
+            lastFilter = filter;
+            lastMatches = index.find(filter);
+            return lastMatches;
+        }
+    }
+
+    /**
+     * Gets a page of choices.
+     *
+     * @param cursor cursor returned with a previous page, or {@code null} to evaluate the choices again
+     * @param choices evaluates the choices, when there is no snapshot for the cursor
+     * @param offset index of the first choice returned, among the choices matching the filter
+     * @param limit maximum number of choices returned, at most {@link #MAX_PAGE_SIZE}
+     * @param filter text the labels of the choices must contain, ignoring case, or blank for all the choices;
+     *        choices starting with the filter come first
+     * @return JSON object with the {@code cursor} for the next pages, the {@code total} number of choices
+     *         matching the filter, the {@code offset}, the {@code labels} and {@code values} of the page, the
+     *         indexes in the page of the {@code selected} and {@code disabled} choices, and for the first page
+     *         without filter, the {@code selectedValue}, of the first selected choice, defaulting to the first
+     *         choice
+     */
+    public static @NonNull JSONObject page(@CheckForNull String cursor, @NonNull Supplier<List<Choice>> choices,
+                                           int offset, int limit, @CheckForNull String filter) {
+        final String owner = Jenkins.getAuthentication2().getName();
+        String currentCursor = cursor;
+        Snapshot snapshot = currentCursor == null ? null : get(currentCursor, owner);
+        if (snapshot == null) {
+            snapshot = new Snapshot(owner, choices.get());
+            currentCursor = UUID.randomUUID().toString();
+            if (MAX_SNAPSHOTS > 0) {
+                synchronized (SNAPSHOTS) {
+                    SNAPSHOTS.put(currentCursor, snapshot);
+                }
+            }
+        }
+
+        final int[] matches = StringUtils.isBlank(filter) ? null : snapshot.matches(filter.trim());
+        final int total = matches == null ? snapshot.choices.length : matches.length;
+        final int from = Math.max(0, Math.min(offset, total));
+        final int to = Math.min(total, from + Math.max(0, Math.min(limit, MAX_PAGE_SIZE)));
+        final List<String> labels = new ArrayList<>(to - from);
+        final List<String> values = new ArrayList<>(to - from);
+        final List<Integer> selected = new ArrayList<>();
+        final List<Integer> disabled = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            final Choice choice = snapshot.choices[matches == null ? i : matches[i]];
+            if (choice.isSelected()) {
+                selected.add(labels.size());
+            }
+            if (choice.isDisabled()) {
+                disabled.add(labels.size());
+            }
+            labels.add(choice.getLabel());
+            values.add(choice.getValue());
+        }
+
+        final JSONObject page = new JSONObject();
+        page.put("cursor", currentCursor);
+        page.put("total", total);
+        page.put("offset", from);
+        page.put("labels", JSONArray.fromObject(labels));
+        page.put("values", JSONArray.fromObject(values));
+        page.put("selected", JSONArray.fromObject(selected));
+        page.put("disabled", JSONArray.fromObject(disabled));
+        if (from == 0 && matches == null && snapshot.choices.length > 0) {
+            Choice first = snapshot.choices[0];
+            for (Choice choice : snapshot.choices) {
+                if (choice.isSelected()) {
+                    first = choice;
+                    break;
+                }
+            }
+            page.put("selectedValue", first.getValue());
+        }
+        return page;
+    }
+
+    private static Snapshot get(String cursor, String owner) {
+        synchronized (SNAPSHOTS) {
+            final Snapshot snapshot = SNAPSHOTS.get(cursor);
+            if (snapshot == null) {
+                return null;
+            }
+            if (snapshot.isExpired()) {
+                SNAPSHOTS.remove(cursor);
+                return null;
+            }
+            if (!Objects.equals(snapshot.owner, owner)) {
+                return null;
+            }
+            snapshot.lastAccess = System.nanoTime();
+            return snapshot;
+        }
+    }
+
+    /**
+     * Discards every snapshot.
+     */
+    public static void clear() {
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.clear();
+        }
+    }
+}
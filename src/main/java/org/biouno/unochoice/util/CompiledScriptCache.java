@@ -0,0 +1,339 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.RejectedAccessException;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.GroovySandbox;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.ClassLoaderWhitelist;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.ProxyWhitelist;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.Whitelist;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ApprovalContext;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyShell;
+import hudson.init.Terminator;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>A bounded cache of compiled Groovy script classes, so that evaluating the same script again only
+ * needs to create a new {@link Binding} and run it, instead of parsing and compiling the source on every
+ * page load and every cascade update.</p>
+ *
+ * <p>Only the compiled class is shared: every evaluation runs a new instance of it, so the script variables,
+ * including the ones declared with {@code @Field}, do not survive between evaluations. Scripts declaring
+ * static fields, whose values would be shared between evaluations and between users, are not cached, nor are
+ * scripts with additional classpath entries. They are delegated to
+ * {@link SecureGroovyScript#evaluate(ClassLoader, Binding, hudson.model.TaskListener)}.</p>
+ *
+ * <p>Scripts are compiled and run with the public script-security APIs {@code SecureGroovyScript} uses itself:
+ * {@link ScriptApproval#using(String, org.jenkinsci.plugins.scriptsecurity.scripts.Language)} checks the
+ * approval of scripts not run in the sandbox on every evaluation (not only when compiling), so revoking the
+ * approval of a script takes effect immediately, and {@link GroovySandbox} compiles and runs the other ones,
+ * with the same whitelist.</p>
+ *
+ * <p>Entries are keyed on the script text, the sandbox flag, and the class loader used for compilation, held
+ * through a weak reference. As the compiled classes reference that class loader, the entries compiled with a
+ * class loader are dropped as soon as another one is used, e.g. after Jenkins restarted in the same JVM, and
+ * when Jenkins stops. Classes removed from the cache are removed from the Groovy meta-class registry, and the
+ * class loader that defined them forgets them.</p>
+ *
+ * <p>The maximum number of entries can be set with the system property
+ * {@code org.biouno.unochoice.util.CompiledScriptCache.maxSize} (default {@code 500}). Setting it to
+ * {@code 0} disables the cache.</p>
+ *
+ * @since 2.8.9
+ */
+public final class CompiledScriptCache {
+
+    private static final Logger LOGGER = Logger.getLogger(CompiledScriptCache.class.getName());
+
+    /**
+     * Maximum number of compiled scripts kept in memory. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int MAX_SIZE = SystemProperties.getInteger(CompiledScriptCache.class.getName() + ".maxSize", 500);
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    /**
+     * LRU map of compiled scripts. Access is guarded by the map monitor.
+     */
+    private static final Map<Key, CompiledScript> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CompiledScript> eldest) {
+            if (size() > MAX_SIZE) {
+                eldest.getValue().dispose();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Class loader of the cached scripts. Guarded by the {@link #CACHE} monitor.
+     */
+    private static WeakReference<ClassLoader> cachedLoader = new WeakReference<>(null);
+
+    private CompiledScriptCache() {}
+
+    /**
+     * Evaluates the given secure script, re-using a previously compiled class when available.
+     *
+     * @param secureScript the script to evaluate
+     * @param classLoader the class loader used to compile the script
+     * @param binding the binding with the script variables
+     * @return the value returned by the script
+     * @throws Exception if the script is not approved, is rejected by the sandbox, or fails to run
+     */
+    public static Object evaluate(@NonNull SecureGroovyScript secureScript, @NonNull ClassLoader classLoader,
+                                  @NonNull Binding binding) throws Exception {
+        if (MAX_SIZE <= 0 || !secureScript.getClasspath().isEmpty()) {
+            return secureScript.evaluate(classLoader, binding, null);
+        }
+        final String text = secureScript.getScript();
+        final boolean sandbox = secureScript.isSandbox();
+        if (!sandbox) {
+            // throws UnapprovedUsageException if the script was not approved (or had its approval revoked)
+            ScriptApproval.get().using(text, GroovyLanguage.get());
+        }
+        final Key key = new Key(text, sandbox, classLoader);
+        CompiledScript compiled;
+        synchronized (CACHE) {
+            if (cachedLoader.get() != classLoader) {
+                // do not keep the previous class loader, referenced by the classes compiled with it
+                clearCache();
+                cachedLoader = new WeakReference<>(classLoader);
+            }
+            compiled = CACHE.get(key);
+        }
+        if (compiled != null) {
+            HITS.incrementAndGet();
+        } else {
+            MISSES.incrementAndGet();
+            // compile outside the lock; two threads compiling the same script at once is harmless
+            compiled = compile(text, sandbox, classLoader);
+            synchronized (CACHE) {
+                final CompiledScript previous = CACHE.putIfAbsent(key, compiled);
+                if (previous != null) {
+                    compiled.dispose();
+                    compiled = previous;
+                }
+            }
+        }
+        if (compiled.scriptClass == null) {
+            return secureScript.evaluate(classLoader, binding, null);
+        }
+        return compiled.run(binding);
+    }
+
+    private static CompiledScript compile(String text, boolean sandbox, ClassLoader classLoader) {
+        final GroovyShell shell;
+        if (sandbox) {
+            shell = new GroovyShell(GroovySandbox.createSecureClassLoader(classLoader), new Binding(),
+                    GroovySandbox.createSecureCompilerConfiguration());
+        } else {
+            shell = new GroovyShell(classLoader, new Binding(), new CompilerConfiguration());
+        }
+        final Class<? extends groovy.lang.Script> scriptClass = shell.parse(text).getClass();
+        final CompiledScript compiled = new CompiledScript(scriptClass, shell.getClassLoader(), sandbox);
+        if (hasStaticState(shell.getClassLoader())) {
+            // not shared, the script is compiled again and cleaned up by SecureGroovyScript on every evaluation
+            compiled.dispose();
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(String.format("Script class %s declares static fields, it is not cached",
+                        scriptClass.getName()));
+            }
+            return new CompiledScript(null, null, sandbox);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(String.format("Compiled script class %s (sandbox=%s)", scriptClass.getName(), sandbox));
+        }
+        return compiled;
+    }
+
+    /**
+     * @return whether the classes of a script, including its closures and inner classes, declare static fields,
+     *         other than the ones generated by Groovy
+     */
+    private static boolean hasStaticState(GroovyClassLoader scriptLoader) {
+        for (Class<?> type : scriptLoader.getLoadedClasses()) {
+            for (Field field : type.getDeclaredFields()) {
+                final String name = field.getName();
+                if (Modifier.isStatic(field.getModifiers()) && !field.isSynthetic() && !name.startsWith("$")
+                        && !name.startsWith("__")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of evaluations that re-used a compiled script
+     */
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    /**
+     * @return number of evaluations that had to compile the script
+     */
+    public static long getMisses() {
+        return MISSES.get();
+    }
+
+    /**
+     * @return number of compiled scripts currently in the cache
+     */
+    public static int size() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * Removes all the compiled scripts, and resets the counters. Called when Jenkins stops, so that the cache
+     * does not keep its class loader.
+     */
+    @Terminator
+    public static void clear() {
+        synchronized (CACHE) {
+            clearCache();
+            cachedLoader = new WeakReference<>(null);
+        }
+        HITS.set(0);
+        MISSES.set(0);
+    }
+
+    private static void clearCache() {
+        for (CompiledScript compiled : CACHE.values()) {
+            compiled.dispose();
+        }
+        CACHE.clear();
+    }
+
+    /**
+     * A compiled script class, plus what is needed to run it again. Without class, the script must not be
+     * cached, and is evaluated by {@link SecureGroovyScript}.
+     */
+    private static final class CompiledScript {
+        private final Class<? extends groovy.lang.Script> scriptClass;
+        private final GroovyClassLoader scriptLoader;
+        private final boolean sandbox;
+
+        CompiledScript(Class<? extends groovy.lang.Script> scriptClass, GroovyClassLoader scriptLoader,
+                       boolean sandbox) {
+            this.scriptClass = scriptClass;
+            this.scriptLoader = scriptLoader;
+            this.sandbox = sandbox;
+        }
+
+        /**
+         * Runs a new instance of the script class, so that no state is kept between evaluations.
+         */
+        Object run(Binding binding) {
+            if (!sandbox) {
+                return InvokerHelper.createScript(scriptClass, binding).run();
+            }
+            // same whitelist used by SecureGroovyScript: classes defined by the script, plus the global whitelist
+            final GroovySandbox groovySandbox = new GroovySandbox()
+                    .withWhitelist(new ProxyWhitelist(new ClassLoaderWhitelist(scriptLoader), Whitelist.all()));
+            try (GroovySandbox.Scope scope = groovySandbox.enter()) {
+                return InvokerHelper.createScript(scriptClass, binding).run();
+            } catch (RejectedAccessException x) {
+                throw ScriptApproval.get().accessRejected(x, ApprovalContext.create());
+            }
+        }
+
+        /**
+         * Releases the script classes once removed from the cache. Evaluations still running are not affected.
+         */
+        void dispose() {
+            if (scriptLoader == null) {
+                return;
+            }
+            for (Class<?> type : scriptLoader.getLoadedClasses()) {
+                InvokerHelper.removeClass(type);
+            }
+            scriptLoader.clearCache();
+        }
+    }
+
+    /**
+     * Cache key. The script text is compared with {@code equals}, so two different scripts never share an
+     * entry, even if their hashes collide. The class loader is compared by identity, and not kept by the key.
+     */
+    private static final class Key {
+        private final String text;
+        private final boolean sandbox;
+        private final WeakReference<ClassLoader> classLoader;
+        private final int hash;
+
+        Key(String text, boolean sandbox, ClassLoader classLoader) {
+            this.text = text;
+            this.sandbox = sandbox;
+            this.classLoader = new WeakReference<>(classLoader);
+            this.hash = Objects.hash(text, sandbox, System.identityHashCode(classLoader));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            final ClassLoader loader = classLoader.get();
+            return sandbox == other.sandbox && loader != null && loader == other.classLoader.get()
+                    && text.equals(other.text);
+        }
+    }
+}
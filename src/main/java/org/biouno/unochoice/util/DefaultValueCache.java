@@ -0,0 +1,211 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import org.springframework.security.core.Authentication;
+
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>Keeps the last known default value of the parameters using the last known default value strategy, so that
+ * builds triggered without the UI (timers, SCM, upstream or REST) do not wait for their scripts.</p>
+ *
+ * <p>Values are keyed on the parameter random name (its UUID). The script used to produce a value is stored
+ * alongside it, so that a re-configured parameter never gets the default value of its old script. The first
+ * default value is evaluated by the caller. Then the last known value is returned at once, and evaluated again
+ * in the background when it is older than {@link #REFRESH_INTERVAL} seconds, one evaluation at a time per
+ * parameter.</p>
+ *
+ * <p>The refresh interval can be set with the system property
+ * {@code org.biouno.unochoice.util.DefaultValueCache.refreshInterval} (default {@code 60}), the maximum number
+ * of values with {@code org.biouno.unochoice.util.DefaultValueCache.maxSize} (default {@code 1000}), and the
+ * number of scripts evaluated at the same time in the background with
+ * {@code org.biouno.unochoice.util.DefaultValueCache.threads} (default {@code 2}, read once).</p>
+ *
+ * @since 2.8.9
+ */
+public final class DefaultValueCache {
+
+    private static final Logger LOGGER = Logger.getLogger(DefaultValueCache.class.getName());
+
+    /**
+     * Age, in seconds, after which a default value is evaluated again in the background. Not final so it can be
+     * changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int REFRESH_INTERVAL = SystemProperties.getInteger(
+            DefaultValueCache.class.getName() + ".refreshInterval", 60);
+
+    /**
+     * Maximum number of default values kept in memory. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int MAX_SIZE = SystemProperties.getInteger(DefaultValueCache.class.getName() + ".maxSize", 1000);
+
+    /**
+     * Maximum number of default values evaluated at the same time in the background.
+     */
+    private static final int THREADS = SystemProperties.getInteger(DefaultValueCache.class.getName() + ".threads", 2);
+
+    /**
+     * LRU map of default values. Access is guarded by the map monitor.
+     */
+    private static final Map<String, Entry> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private DefaultValueCache() {}
+
+    /**
+     * Lazily created executor for the background evaluations.
+     */
+    private static final class ExecutorHolder {
+        private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Math.max(1, THREADS),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Active Choices default value refresh"));
+    }
+
+    /**
+     * Gets the last known default value of a parameter, evaluating it if there is none. A value older than
+     * {@link #REFRESH_INTERVAL} seconds is still returned, and evaluated again in the background, with the
+     * authentication of the caller.
+     *
+     * @param randomName parameter random name
+     * @param script the script currently configured in the parameter
+     * @param evaluation evaluates the default value of the parameter
+     * @return the default value
+     */
+    public static @NonNull String get(@NonNull String randomName, @CheckForNull Object script,
+                                      @NonNull Supplier<String> evaluation) {
+        final Entry entry;
+        synchronized (CACHE) {
+            final Entry cached = CACHE.get(randomName);
+            entry = cached != null && cached.script == script ? cached : null;
+        }
+        if (entry == null) {
+            final String value = evaluation.get();
+            put(randomName, script, value);
+            return value;
+        }
+        if (entry.isStale() && entry.refreshing.compareAndSet(false, true)) {
+            refresh(randomName, script, evaluation, entry);
+        }
+        return entry.value;
+    }
+
+    private static void refresh(String randomName, Object script, Supplier<String> evaluation, Entry entry) {
+        final Authentication authentication = Jenkins.getAuthentication2();
+        try {
+            ExecutorHolder.EXECUTOR.execute(() -> {
+                try (ACLContext ignored = ACL.as2(authentication)) {
+                    put(randomName, script, evaluation.get());
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to refresh the default value of parameter " + randomName, e);
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+            LOGGER.log(Level.WARNING, "Failed to start the refresh of the default value of parameter " + randomName, e);
+        }
+    }
+
+    /**
+     * Stores the default value of a parameter.
+     *
+     * @param randomName parameter random name
+     * @param script the script that produced the value
+     * @param value the default value
+     */
+    public static void put(@NonNull String randomName, @CheckForNull Object script, @NonNull String value) {
+        if (MAX_SIZE <= 0) {
+            return;
+        }
+        synchronized (CACHE) {
+            CACHE.put(randomName, new Entry(script, value));
+        }
+    }
+
+    /**
+     * Removes the default value of the given parameter.
+     *
+     * @param randomName parameter random name
+     */
+    public static void invalidate(@NonNull String randomName) {
+        synchronized (CACHE) {
+            CACHE.remove(randomName);
+        }
+    }
+
+    /**
+     * Removes all the default values.
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static final class Entry {
+        private final Object script;
+        private final String value;
+        private final long createdAt = System.nanoTime();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(Object script, String value) {
+            this.script = script;
+            this.value = value;
+        }
+
+        boolean isStale() {
+            return System.nanoTime() - createdAt > TimeUnit.SECONDS.toNanos(Math.max(0, REFRESH_INTERVAL));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.NodePropertyDescriptor;
+import hudson.util.DescribableList;
+import jenkins.model.Jenkins;
+
+/**
+ * <p>Immutable snapshot of the environment variables of the global node properties, shared by reference
+ * by every script evaluation.</p>
+ *
+ * <p>The snapshot is discarded by a {@link SaveableListener} when the global configuration is saved, and
+ * rebuilt on the next access. It is also rebuilt when the {@link EnvironmentVariablesNodeProperty} instances
+ * configured differ from the ones it was built from, e.g. after the configuration is reloaded from disk.
+ * Comparing them only walks the global node properties, not the variables.</p>
+ *
+ * <p>Callers that need to add bindings wrap the snapshot in an {@link OverlayMap}.</p>
+ *
+ * @since 2.8.9
+ */
+public final class GlobalNodeProperties {
+
+    private static volatile Snapshot snapshot;
+
+    private GlobalNodeProperties() {}
+
+    private static final class Snapshot {
+        private final List<EnvironmentVariablesNodeProperty> sources;
+        private final Map<String, Object> properties;
+
+        private Snapshot(DescribableList<NodeProperty<?>, NodePropertyDescriptor> globalNodeProperties) {
+            final List<EnvironmentVariablesNodeProperty> sources = new ArrayList<>();
+            final Map<String, Object> properties = new HashMap<>();
+            if (globalNodeProperties != null) {
+                for (NodeProperty<?> nodeProperty : globalNodeProperties) {
+                    if (nodeProperty instanceof EnvironmentVariablesNodeProperty) {
+                        EnvironmentVariablesNodeProperty envNodeProperty = (EnvironmentVariablesNodeProperty) nodeProperty;
+                        sources.add(envNodeProperty);
+                        properties.putAll(envNodeProperty.getEnvVars());
+                    }
+                }
+            }
+            this.sources = sources;
+            this.properties = Collections.unmodifiableMap(properties);
+        }
+
+        private boolean isFor(DescribableList<NodeProperty<?>, NodePropertyDescriptor> globalNodeProperties) {
+            int i = 0;
+            if (globalNodeProperties != null) {
+                for (NodeProperty<?> nodeProperty : globalNodeProperties) {
+                    if (nodeProperty instanceof EnvironmentVariablesNodeProperty) {
+                        if (i >= sources.size() || sources.get(i) != nodeProperty) {
+                            return false;
+                        }
+                        i++;
+                    }
+                }
+            }
+            return i == sources.size();
+        }
+    }
+
+    /**
+     * Gets the environment variables of the global node properties.
+     *
+     * @return unmodifiable snapshot of the variables
+     */
+    public static @NonNull Map<String, Object> get() {
+        final DescribableList<NodeProperty<?>, NodePropertyDescriptor> globalNodeProperties =
+                Jenkins.get().getGlobalNodeProperties();
+        Snapshot current = snapshot;
+        if (current == null || !current.isFor(globalNodeProperties)) {
+            current = new Snapshot(globalNodeProperties);
+            snapshot = current;
+        }
+        return current.properties;
+    }
+
+    /**
+     * Discards the snapshot, rebuilt on the next access.
+     */
+    public static void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * Discards the snapshot when the global configuration, which holds the global node properties, is saved.
+     */
+    @Extension
+    public static final class SaveListener extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Jenkins) {
+                invalidate();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * <p>Map on top of a base map that is never modified. Reads fall through to the base map, while writes and
+ * removals are recorded in the overlay, so that a large shared map, such as the
+ * {@link GlobalNodeProperties global node properties}, is not copied to add a few entries.</p>
+ *
+ * <p>Iteration returns the entries of the base map that were not replaced or removed, followed by the
+ * entries of the overlay in insertion order. Modifying the map through its views is not supported. The size
+ * is kept up to date on writes, so {@link #size()} does not iterate the base map.</p>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @since 2.8.9
+ */
+public final class OverlayMap<K, V> extends AbstractMap<K, V> implements Serializable {
+
+    private static final long serialVersionUID = -2829175519421362381L;
+
+    @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "Base maps passed to scripts are serializable")
+    private final Map<? extends K, ? extends V> base;
+    private final LinkedHashMap<K, V> overlay = new LinkedHashMap<>();
+    private final HashSet<Object> removed = new HashSet<>();
+    /**
+     * Number of keys of the base map that were replaced or removed.
+     */
+    private int hidden;
+
+    /**
+     * @param base map read through, expected to be serializable and not modified afterwards
+     */
+    public OverlayMap(@NonNull Map<? extends K, ? extends V> base) {
+        this.base = base;
+    }
+
+    private boolean inBase(Object key) {
+        return !overlay.containsKey(key) && !removed.contains(key) && base.containsKey(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overlay.containsKey(key) || (!removed.contains(key) && base.containsKey(key));
+    }
+
+    @Override
+    public V get(Object key) {
+        if (overlay.containsKey(key)) {
+            return overlay.get(key);
+        }
+        return removed.contains(key) ? null : base.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        final V previous = get(key);
+        if (inBase(key)) {
+            hidden++;
+        }
+        removed.remove(key);
+        overlay.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final V previous = get(key);
+        if (inBase(key)) {
+            hidden++;
+        }
+        overlay.remove(key);
+        if (base.containsKey(key)) {
+            removed.add(key);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        overlay.clear();
+        removed.addAll(base.keySet());
+        hidden = base.size();
+    }
+
+    @Override
+    public int size() {
+        return base.size() - hidden + overlay.size();
+    }
+
+    @Override
+    public @NonNull Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public @NonNull Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return OverlayMap.this.size();
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private final Iterator<? extends Entry<? extends K, ? extends V>> baseEntries = base.entrySet().iterator();
+        private final Iterator<Entry<K, V>> overlayEntries = overlay.entrySet().iterator();
+        private Entry<K, V> next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && baseEntries.hasNext()) {
+                final Entry<? extends K, ? extends V> entry = baseEntries.next();
+                if (inBase(entry.getKey())) {
+                    next = new SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+                }
+            }
+            if (next == null && overlayEntries.hasNext()) {
+                final Entry<K, V> entry = overlayEntries.next();
+                next = new SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Entry<K, V> entry = next;
+            next = null;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import org.biouno.unochoice.AbstractCascadableParameter;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+
+/**
+ * <p>Dependency graph of the cascadable parameters of a job, built from their referenced parameters.</p>
+ *
+ * <p>The graph gives the order in which parameters must be evaluated, so that each parameter comes after
+ * the parameters it references, and the parameters affected by the change of another parameter. A parameter
+ * referencing itself is not a cycle, as the UI supports it. Other cycles are reported by the validation of the
+ * referenced parameters in the configuration form, logged when the graph is built, and the parameters in them
+ * are evaluated once, in declaration order.</p>
+ *
+ * <p>Graphs are cached per job, dropped when the job configuration is saved, and built again when first
+ * needed.</p>
+ *
+ * @since 2.8.9
+ */
+public final class ParameterDependencyGraph {
+
+    private static final Logger LOGGER = Logger.getLogger(ParameterDependencyGraph.class.getName());
+
+    /**
+     * Graphs by job. Reloaded jobs are new objects, so they never see the graph of the previous instance.
+     */
+    private static final Map<Job<?, ?>, ParameterDependencyGraph> GRAPHS = new WeakHashMap<>();
+
+    /**
+     * Cascadable parameters by name, in evaluation order.
+     */
+    private final Map<String, AbstractCascadableParameter> parameters;
+    /**
+     * Parameter name to the names of the cascadable parameters referencing it, ignoring self references.
+     */
+    private final Map<String, List<String>> dependents;
+    /**
+     * Names of the parameters referencing themselves.
+     */
+    private final Set<String> selfReferencing;
+    /**
+     * Names of the parameters in a cycle.
+     */
+    private final Set<String> cyclic;
+
+    private ParameterDependencyGraph(Map<String, AbstractCascadableParameter> parameters,
+            Map<String, List<String>> dependents, Set<String> selfReferencing, Set<String> cyclic) {
+        this.parameters = parameters;
+        this.dependents = dependents;
+        this.selfReferencing = selfReferencing;
+        this.cyclic = cyclic;
+    }
+
+    /**
+     * Gets the dependency graph of the given job, building it if not cached.
+     *
+     * @param job job
+     * @return dependency graph of the job
+     */
+    public static @NonNull ParameterDependencyGraph of(@NonNull Job<?, ?> job) {
+        synchronized (GRAPHS) {
+            final ParameterDependencyGraph graph = GRAPHS.get(job);
+            if (graph != null) {
+                return graph;
+            }
+        }
+        return rebuild(job);
+    }
+
+    /**
+     * Builds the dependency graph of the given job again, replacing the cached one.
+     *
+     * @param job job
+     * @return dependency graph of the job
+     */
+    public static @NonNull ParameterDependencyGraph rebuild(@NonNull Job<?, ?> job) {
+        final ParameterDependencyGraph graph = build(Utils.getAllParameterDefinitions(job));
+        if (!graph.cyclic.isEmpty()) {
+            LOGGER.warning(String.format("Parameters %s of job %s reference each other in a cycle. They are "
+                    + "evaluated once, in declaration order", graph.cyclic, job.getFullName()));
+        }
+        synchronized (GRAPHS) {
+            GRAPHS.put(job, graph);
+        }
+        return graph;
+    }
+
+    /**
+     * Removes the cached graph of the given job.
+     *
+     * @param job job
+     */
+    public static void invalidate(@NonNull Job<?, ?> job) {
+        synchronized (GRAPHS) {
+            GRAPHS.remove(job);
+        }
+    }
+
+    /**
+     * Removes every cached graph.
+     */
+    public static void clear() {
+        synchronized (GRAPHS) {
+            GRAPHS.clear();
+        }
+    }
+
+    /**
+     * Finds the parameters of a job a cascadable parameter would be in a cycle with, if it referenced the given
+     * parameters, e.g. to validate the configuration form before it is saved.
+     *
+     * @param job job
+     * @param name name of the parameter, possibly not saved yet
+     * @param referencedParameters comma separated names of the parameters it would reference
+     * @return names of the parameters in a cycle with the parameter, including it, or an empty set if none
+     */
+    public static @NonNull Set<String> findCycle(@NonNull Job<?, ?> job, @NonNull String name,
+            @CheckForNull String referencedParameters) {
+        final Map<String, AbstractCascadableParameter> declared = declared(Utils.getAllParameterDefinitions(job));
+        final Map<String, String[]> references = references(declared);
+        final List<String> names = new ArrayList<>();
+        if (referencedParameters != null) {
+            for (String referenced : referencedParameters.split(",")) {
+                if (!referenced.trim().isEmpty()) {
+                    names.add(referenced.trim());
+                }
+            }
+        }
+        references.put(name, names.toArray(new String[0]));
+        final ParameterDependencyGraph graph = build(declared, references);
+        if (!graph.cyclic.contains(name)) {
+            return Collections.emptySet();
+        }
+        final Set<String> cycle = new LinkedHashSet<>();
+        for (String parameter : graph.cyclic) {
+            if (parameter.equals(name) || reachable(parameter, graph.dependents, graph.cyclic).contains(name)
+                    && reachable(name, graph.dependents, graph.cyclic).contains(parameter)) {
+                cycle.add(parameter);
+            }
+        }
+        return cycle;
+    }
+
+    /**
+     * Builds the dependency graph of the given parameter definitions.
+     *
+     * @param definitions parameter definitions, in declaration order
+     * @return dependency graph
+     */
+    static @NonNull ParameterDependencyGraph build(@NonNull List<ParameterDefinition> definitions) {
+        final Map<String, AbstractCascadableParameter> declared = declared(definitions);
+        return build(declared, references(declared));
+    }
+
+    private static Map<String, AbstractCascadableParameter> declared(List<ParameterDefinition> definitions) {
+        final Map<String, AbstractCascadableParameter> declared = new LinkedHashMap<>();
+        for (ParameterDefinition definition : definitions) {
+            if (definition instanceof AbstractCascadableParameter) {
+                declared.putIfAbsent(definition.getName(), (AbstractCascadableParameter) definition);
+            }
+        }
+        return declared;
+    }
+
+    private static Map<String, String[]> references(Map<String, AbstractCascadableParameter> declared) {
+        final Map<String, String[]> references = new LinkedHashMap<>();
+        for (AbstractCascadableParameter parameter : declared.values()) {
+            references.put(parameter.getName(), parameter.getReferencedParametersAsArray());
+        }
+        return references;
+    }
+
+    /**
+     * @param declared cascadable parameters by name
+     * @param references names of the parameters referenced by each parameter, by name, in declaration order;
+     *        parameters not in {@code declared} are only used to find cycles
+     */
+    private static ParameterDependencyGraph build(Map<String, AbstractCascadableParameter> declared,
+            Map<String, String[]> references) {
+        final Map<String, List<String>> dependents = new HashMap<>();
+        final Set<String> selfReferencing = new HashSet<>();
+        final Map<String, Integer> pendingReferences = new HashMap<>();
+        for (Map.Entry<String, String[]> entry : references.entrySet()) {
+            final String name = entry.getKey();
+            int count = 0;
+            for (String referenced : new LinkedHashSet<>(List.of(entry.getValue()))) {
+                if (referenced.equals(name)) {
+                    selfReferencing.add(name);
+                    continue;
+                }
+                dependents.computeIfAbsent(referenced, k -> new ArrayList<>()).add(name);
+                if (references.containsKey(referenced)) {
+                    count++;
+                }
+            }
+            pendingReferences.put(name, count);
+        }
+        // Kahn's algorithm, picking the ready parameters in declaration order
+        final Map<String, AbstractCascadableParameter> ordered = new LinkedHashMap<>();
+        final Deque<String> ready = new ArrayDeque<>();
+        for (String name : references.keySet()) {
+            if (pendingReferences.get(name) == 0) {
+                ready.add(name);
+            }
+        }
+        while (!ready.isEmpty()) {
+            final String name = ready.poll();
+            ordered.put(name, declared.get(name));
+            for (String dependent : dependents.getOrDefault(name, Collections.emptyList())) {
+                if (pendingReferences.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        // what is left is in a cycle, or downstream of one
+        final Set<String> cyclic = new LinkedHashSet<>();
+        if (ordered.size() < references.size()) {
+            final Set<String> left = new LinkedHashSet<>(references.keySet());
+            left.removeAll(ordered.keySet());
+            for (String name : left) {
+                if (reachable(name, dependents, left).contains(name)) {
+                    cyclic.add(name);
+                }
+                ordered.put(name, declared.get(name));
+            }
+        }
+        return new ParameterDependencyGraph(Collections.unmodifiableMap(ordered), dependents, selfReferencing,
+                Collections.unmodifiableSet(cyclic));
+    }
+
+    private static Set<String> reachable(String from, Map<String, List<String>> dependents, Set<String> within) {
+        final Set<String> visited = new HashSet<>();
+        final Deque<String> toVisit = new ArrayDeque<>(dependents.getOrDefault(from, Collections.emptyList()));
+        while (!toVisit.isEmpty()) {
+            final String name = toVisit.poll();
+            if (within.contains(name) && visited.add(name)) {
+                toVisit.addAll(dependents.getOrDefault(name, Collections.emptyList()));
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * @param name parameter name
+     * @return the cascadable parameter with the given name, or {@code null} if none
+     */
+    public @CheckForNull AbstractCascadableParameter getParameter(@NonNull String name) {
+        return parameters.get(name);
+    }
+
+    /**
+     * @return the cascadable parameters, each one after the parameters it references
+     */
+    public @NonNull List<AbstractCascadableParameter> getParameters() {
+        return new ArrayList<>(parameters.values());
+    }
+
+    /**
+     * Gets the parameters that directly or transitively reference the given parameter. The given parameter is
+     * included only if it references itself.
+     *
+     * @param changedParameterName name of the parameter that changed
+     * @return affected parameters, each one after the parameters it references
+     */
+    public @NonNull List<AbstractCascadableParameter> getDownstream(@NonNull String changedParameterName) {
+        final Set<String> affected = reachable(changedParameterName, dependents, parameters.keySet());
+        if (selfReferencing.contains(changedParameterName)) {
+            affected.add(changedParameterName);
+        }
+        final List<AbstractCascadableParameter> downstream = new ArrayList<>(affected.size());
+        for (Map.Entry<String, AbstractCascadableParameter> entry : parameters.entrySet()) {
+            if (affected.contains(entry.getKey())) {
+                downstream.add(entry.getValue());
+            }
+        }
+        if (LOGGER.isLoggable(Level.FINEST)) {
+            LOGGER.finest(String.format("%d parameter(s) downstream of %s", downstream.size(), changedParameterName));
+        }
+        return downstream;
+    }
+
+    /**
+     * @return names of the parameters in a cycle, not counting parameters referencing only themselves
+     */
+    public @NonNull Set<String> getCyclicParameters() {
+        return cyclic;
+    }
+
+    /**
+     * Drops the graph of deleted jobs.
+     */
+    @Extension
+    public static final class Listener extends ItemListener {
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof Job) {
+                invalidate((Job<?, ?>) item);
+            }
+        }
+    }
+
+    /**
+     * Drops the graph when a job is saved, be it from the configuration page or the API. It is built again
+     * when first needed, so saving jobs without Active Choices parameters costs nothing.
+     */
+    @Extension
+    public static final class SaveListener extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Job) {
+                invalidate((Job<?, ?>) o);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import org.biouno.unochoice.AbstractUnoChoiceParameter;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ParameterDefinition;
+import hudson.model.Project;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+
+/**
+ * <p>Index of parameter random names (UUIDs) to the full name of the project that defines them.</p>
+ *
+ * <p>The index is updated incrementally by an {@link ItemListener}, when projects are created, copied,
+ * renamed or moved, and deleted, and by a {@link SaveableListener} when they are saved, be it from the
+ * configuration page or the API. Projects visited by the linear scan in
+ * {@link Utils#findProjectByParameterUUID(String)} are indexed too, so the scan is only a fallback for
+ * projects that were not touched since Jenkins started.</p>
+ *
+ * <p>Copied projects keep the random names of their parameters. In that case the index points to the
+ * project indexed last, which is as arbitrary as the first match returned by the scan.</p>
+ *
+ * @since 2.8.9
+ */
+public final class ParameterProjectIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ParameterProjectIndex.class.getName());
+
+    /**
+     * Parameter random name to project full name.
+     */
+    private static final Map<String, String> PROJECT_BY_PARAMETER = new HashMap<>();
+    /**
+     * Project full name to the parameter random names it defines. Used to remove stale entries.
+     */
+    private static final Map<String, Set<String>> PARAMETERS_BY_PROJECT = new HashMap<>();
+
+    private ParameterProjectIndex() {}
+
+    /**
+     * Gets the full name of the project that defines the given parameter.
+     *
+     * @param parameterUUID parameter random name
+     * @return project full name, or {@code null} if the parameter is not indexed
+     */
+    public static synchronized @CheckForNull String getProjectFullName(@NonNull String parameterUUID) {
+        return PROJECT_BY_PARAMETER.get(parameterUUID);
+    }
+
+    /**
+     * (Re-)indexes the parameters of the given project.
+     *
+     * @param project project
+     * @return random names of the Active Choices parameters defined in the project
+     */
+    public static @NonNull Set<String> index(@NonNull Project<?, ?> project) {
+        final Set<String> uuids = new HashSet<>();
+        for (ParameterDefinition pd : Utils.getAllParameterDefinitions(project)) {
+            if (pd instanceof AbstractUnoChoiceParameter) {
+                uuids.add(((AbstractUnoChoiceParameter) pd).getRandomName());
+            }
+        }
+        put(project.getFullName(), uuids);
+        return uuids;
+    }
+
+    /**
+     * Removes the parameters of the project with the given full name.
+     *
+     * @param fullName project full name
+     */
+    public static void remove(@NonNull String fullName) {
+        put(fullName, Set.of());
+    }
+
+    private static synchronized void put(String fullName, Set<String> uuids) {
+        final Set<String> previous = PARAMETERS_BY_PROJECT.remove(fullName);
+        if (previous != null) {
+            for (String uuid : previous) {
+                PROJECT_BY_PARAMETER.remove(uuid, fullName);
+            }
+        }
+        if (!uuids.isEmpty()) {
+            PARAMETERS_BY_PROJECT.put(fullName, uuids);
+            for (String uuid : uuids) {
+                PROJECT_BY_PARAMETER.put(uuid, fullName);
+            }
+        }
+        if (LOGGER.isLoggable(Level.FINEST)) {
+            LOGGER.finest(String.format("Indexed %d parameter(s) of project %s", uuids.size(), fullName));
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public static synchronized void clear() {
+        PROJECT_BY_PARAMETER.clear();
+        PARAMETERS_BY_PROJECT.clear();
+    }
+
+    /**
+     * Keeps the index up-to-date with the projects created, copied, renamed or moved, and deleted. Saved
+     * projects are indexed by the {@link SaveListener}.
+     */
+    @Extension
+    public static final class Listener extends ItemListener {
+
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof Project) {
+                index((Project<?, ?>) item);
+            }
+        }
+
+        @Override
+        public void onCopied(Item src, Item item) {
+            onCreated(item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof Project) {
+                remove(item.getFullName());
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            if (item instanceof Project) {
+                remove(oldFullName);
+                index((Project<?, ?>) item);
+            }
+        }
+    }
+
+    /**
+     * Re-indexes saved projects, be it from the configuration page or the API (e.g. REST or Java).
+     */
+    @Extension
+    public static final class SaveListener extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Project) {
+                index((Project<?, ?>) o);
+            }
+        }
+    }
+}
@@ -64,7 +64,11 @@ public class SafeHtmlExtendedMarkupFormatter extends MarkupFormatter {
      */
     @Override
     public void translate(String markup, Writer output) throws IOException {
-        HtmlStreamRenderer renderer = HtmlStreamRenderer.create(
+        HtmlSanitizer.sanitize(markup, POLICY.apply(createRenderer(output)));
+    }
+
+    private static HtmlStreamRenderer createRenderer(Appendable output) {
+        return HtmlStreamRenderer.create(
             output,
             // Receives notifications on a failure to write to the output.
             Throwables::propagate, // System.out suppresses IOExceptions
@@ -74,6 +78,79 @@ public class SafeHtmlExtendedMarkupFormatter extends MarkupFormatter {
                 throw new Error(x);
             }
         );
-        HtmlSanitizer.sanitize(markup, POLICY.apply(renderer));
+    }
+
+    /**
+     * Checks whether the sanitizer would return the text unchanged: text made only of letters, digits, spaces
+     * and punctuation that is neither markup ({@code <}, {@code >}, {@code &}) nor encoded by the sanitizer
+     * ({@code "}, {@code '}, {@code +}, {@code =}, {@code @}, {@code `}, <code>&#123;</code>). Such text, like most
+     * version numbers, branch names or file names, does not need to go through the sanitizer.
+     *
+     * @param text text
+     * @return {@code true} if the text is returned unchanged by the sanitizer
+     * @since 2.8.9
+     */
+    public static boolean isPlainText(CharSequence text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                if (c < 0x20 || c == 0x7f || "<>&\"'+=@`{".indexOf(c) >= 0) {
+                    return false;
+                }
+            } else if (!Character.isLetterOrDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a sanitizer for many texts, like the values returned by a script. It skips the {@link #isPlainText
+     * plain text}, and reuses one renderer and buffer for the other texts.
+     *
+     * @return a new sanitizer, to be used by a single thread
+     * @since 2.8.9
+     */
+    public static Sanitizer newSanitizer() {
+        return new Sanitizer();
+    }
+
+    /**
+     * Sanitizes texts with this formatter policy, reusing one renderer and buffer. Not thread safe.
+     *
+     * @since 2.8.9
+     */
+    public static final class Sanitizer {
+
+        private final StringBuilder buffer = new StringBuilder();
+        private HtmlSanitizer.Policy policy;
+
+        private Sanitizer() {
+        }
+
+        /**
+         * @param text text to sanitize
+         * @return sanitized text, or {@code null} if the text is {@code null}
+         */
+        public String sanitize(String text) {
+            if (text == null) {
+                return null;
+            }
+            if (isPlainText(text)) {
+                return text;
+            }
+            if (policy == null) {
+                policy = POLICY.apply(createRenderer(buffer));
+            }
+            buffer.setLength(0);
+            try {
+                HtmlSanitizer.sanitize(text, policy);
+            } catch (RuntimeException | Error e) {
+                // the renderer may be left in the middle of a document, so the next text gets a new one
+                policy = null;
+                throw e;
+            }
+            return buffer.toString();
+        }
     }
 }
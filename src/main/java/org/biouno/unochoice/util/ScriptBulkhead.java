@@ -0,0 +1,281 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>Limits how many scripts run at the same time on the controller, and optionally per job.</p>
+ *
+ * <p>A script that cannot run right away waits for its turn, for a limited time, with a limited number of
+ * other scripts. When the wait queue is full, or the wait is over, the script is rejected with a
+ * {@link RejectedException}, and {@link ScriptCallback} returns the result of the fallback script instead.</p>
+ *
+ * <p>Limits are configured with system properties, or with {@link #setLimits(int, int)}:</p>
+ * <ul>
+ *     <li>{@code org.biouno.unochoice.util.ScriptBulkhead.maxConcurrent}: scripts running at the same time on
+ *     the controller. Default {@code 0}, no limit.</li>
+ *     <li>{@code org.biouno.unochoice.util.ScriptBulkhead.maxConcurrentPerJob}: scripts of the same job running
+ *     at the same time. Default {@code 0}, no limit.</li>
+ * </ul>
+ * <p>The wait queue is configured with system properties, that can be changed from the script console:</p>
+ * <ul>
+ *     <li>{@code org.biouno.unochoice.util.ScriptBulkhead.maxWaiting}: scripts waiting for their turn. Default
+ *     {@code 100}.</li>
+ *     <li>{@code org.biouno.unochoice.util.ScriptBulkhead.maxWaitMillis}: how long a script waits for its turn.
+ *     Default {@code 5000}.</li>
+ * </ul>
+ *
+ * <p>Scripts that timed out (see {@link ScriptExecutor}) give their turn back even if they are still running.
+ * How many of them can still be running is bounded by the threads of {@link ScriptExecutor}.</p>
+ *
+ * <p>The turns of a job are dropped when the job, or its folder, is deleted or renamed.</p>
+ *
+ * @since 2.8.9
+ */
+public final class ScriptBulkhead {
+
+    private static final Logger LOGGER = Logger.getLogger(ScriptBulkhead.class.getName());
+
+
+    /**
+     * Maximum number of scripts waiting for their turn. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int MAX_WAITING = SystemProperties.getInteger(ScriptBulkhead.class.getName() + ".maxWaiting", 100);
+
+    /**
+     * Maximum time in milliseconds a script waits for its turn. Not final so it can be changed from the script
+     * console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static long MAX_WAIT_MILLIS = SystemProperties.getLong(ScriptBulkhead.class.getName() + ".maxWaitMillis",
+            5000L);
+
+    private static volatile Semaphore global;
+    private static volatile int maxConcurrentPerJob;
+    private static final Map<String, Semaphore> PER_JOB = new ConcurrentHashMap<>();
+
+    static {
+        setLimits(SystemProperties.getInteger(ScriptBulkhead.class.getName() + ".maxConcurrent", 0),
+                SystemProperties.getInteger(ScriptBulkhead.class.getName() + ".maxConcurrentPerJob", 0));
+    }
+
+    private static final AtomicInteger WAITING = new AtomicInteger();
+    private static final AtomicLong WAITED = new AtomicLong();
+    private static final AtomicLong WAIT_NANOS = new AtomicLong();
+    private static final AtomicLong REJECTIONS = new AtomicLong();
+
+    /**
+     * A turn to run a script, given back when closed.
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Permit NONE = () -> {};
+
+    /**
+     * Thrown when a script cannot run, because too many scripts are running or waiting.
+     */
+    public static final class RejectedException extends RuntimeException {
+
+        private static final long serialVersionUID = -3015236871826398442L;
+
+        RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private ScriptBulkhead() {}
+
+    /**
+     * Changes the concurrency limits. Scripts already running or waiting keep the limits they started with.
+     *
+     * @param maxConcurrent scripts running at the same time on the controller, {@code 0} for no limit
+     * @param maxConcurrentPerJob scripts of the same job running at the same time, {@code 0} for no limit
+     */
+    public static synchronized void setLimits(int maxConcurrent, int maxConcurrentPerJob) {
+        global = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+        ScriptBulkhead.maxConcurrentPerJob = maxConcurrentPerJob;
+        PER_JOB.clear();
+    }
+
+    /**
+     * Waits for a turn to run a script.
+     *
+     * @param jobFullName full name of the job of the script, or {@code null} if unknown
+     * @return turn, to be closed once the script ran
+     * @throws RejectedException if the wait queue is full, or the script waited too long
+     */
+    public static @NonNull Permit acquire(@CheckForNull String jobFullName) {
+        final int perJob = maxConcurrentPerJob;
+        final Semaphore job = (perJob > 0 && jobFullName != null)
+                ? PER_JOB.computeIfAbsent(jobFullName, k -> new Semaphore(perJob, true))
+                : null;
+        final Semaphore all = global;
+        if (all == null && job == null) {
+            return NONE;
+        }
+        // fast path, without queueing
+        if (tryAcquire(job)) {
+            if (tryAcquire(all)) {
+                return permit(all, job);
+            }
+            release(job);
+        }
+        if (WAITING.incrementAndGet() > MAX_WAITING) {
+            WAITING.decrementAndGet();
+            throw reject(String.format("Too many scripts waiting to run (%d)", MAX_WAITING));
+        }
+        final long start = System.nanoTime();
+        try {
+            final long deadline = start + TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS);
+            if (tryAcquire(job, deadline)) {
+                if (tryAcquire(all, deadline)) {
+                    return permit(all, job);
+                }
+                release(job);
+            }
+            throw reject(String.format("No script finished in %d ms", MAX_WAIT_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("Interrupted while waiting to run");
+        } finally {
+            WAITING.decrementAndGet();
+            WAITED.incrementAndGet();
+            WAIT_NANOS.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private static boolean tryAcquire(Semaphore semaphore) {
+        return semaphore == null || semaphore.tryAcquire();
+    }
+
+    private static boolean tryAcquire(Semaphore semaphore, long deadline) throws InterruptedException {
+        return semaphore == null || semaphore.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Drops the turns of the given job, and of the jobs in it if it is a folder. Scripts of the job still
+     * running or waiting give their turn back to the dropped semaphore.
+     *
+     * @param fullName full name of the job or folder
+     */
+    static void forget(@NonNull String fullName) {
+        final String prefix = fullName + '/';
+        PER_JOB.keySet().removeIf(name -> name.equals(fullName) || name.startsWith(prefix));
+    }
+
+    /**
+     * @return number of jobs with their own turns
+     */
+    static int getJobCount() {
+        return PER_JOB.size();
+    }
+
+    private static void release(Semaphore semaphore) {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    private static Permit permit(Semaphore all, Semaphore job) {
+        return () -> {
+            release(all);
+            release(job);
+        };
+    }
+
+    private static RejectedException reject(String message) {
+        REJECTIONS.incrementAndGet();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Rejected script: " + message);
+        }
+        return new RejectedException(message);
+    }
+
+    /**
+     * @return number of scripts waiting for their turn
+     */
+    public static int getQueueDepth() {
+        return WAITING.get();
+    }
+
+    /**
+     * @return number of scripts that waited for their turn since Jenkins started, rejected or not
+     */
+    public static long getWaitCount() {
+        return WAITED.get();
+    }
+
+    /**
+     * @return total time, in milliseconds, scripts waited for their turn since Jenkins started
+     */
+    public static long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(WAIT_NANOS.get());
+    }
+
+    /**
+     * @return number of scripts rejected since Jenkins started
+     */
+    public static long getRejections() {
+        return REJECTIONS.get();
+    }
+
+    /**
+     * Drops the turns of deleted and renamed jobs.
+     */
+    @Extension
+    public static final class Listener extends ItemListener {
+
+        @Override
+        public void onDeleted(Item item) {
+            forget(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            forget(oldFullName);
+        }
+    }
+}
@@ -25,7 +25,10 @@
 package org.biouno.unochoice.util;
 
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import org.biouno.unochoice.model.GroovyScript;
 import org.biouno.unochoice.model.Script;
 import org.jenkinsci.remoting.Role;
 import org.jenkinsci.remoting.RoleChecker;
@@ -45,10 +48,13 @@ public class ScriptCallback<T extends Throwable> implements Callable<Object, T>
 
     private static final long serialVersionUID = 4524316203276099968L;
 
+    private static final Logger LOGGER = Logger.getLogger(ScriptCallback.class.getName());
+
     private final String name;
     private final Script script;
     // Map is not serializable, but LinkedHashMap is. Ignore static analysis errors
     private final Map<String, String> parameters;
+    private final String jobFullName;
 
     /**
      * Create a new ScriptCallback. This can be used to execute code either local or
@@ -58,9 +64,23 @@ public class ScriptCallback<T extends Throwable> implements Callable<Object, T>
      * @param parameters Map of parameters
      */
     public ScriptCallback(String name, Script script, Map<String, String> parameters) {
+        this(name, script, parameters, null);
+    }
+
+    /**
+     * Create a new ScriptCallback, for a script of the given job. Scripts of the same job share the
+     * concurrency limit per job of {@link ScriptBulkhead}.
+     * @param name callable name
+     * @param script script
+     * @param parameters Map of parameters
+     * @param jobFullName full name of the job, or {@code null} if unknown
+     * @since 2.8.9
+     */
+    public ScriptCallback(String name, Script script, Map<String, String> parameters, String jobFullName) {
         this.name = name;
         this.script = script;
         this.parameters = parameters;
+        this.jobFullName = jobFullName;
     }
 
     /**
@@ -93,8 +113,20 @@ public class ScriptCallback<T extends Throwable> implements Callable<Object, T>
      */
     @Override
     public Object call() throws T {
-        final Object eval = script.eval(getParameters());
-        return eval;
+        final ScriptBulkhead.Permit permit;
+        try {
+            permit = ScriptBulkhead.acquire(jobFullName);
+        } catch (ScriptBulkhead.RejectedException e) {
+            if (script instanceof GroovyScript && ((GroovyScript) script).getFallbackScript() != null) {
+                LOGGER.log(Level.FINE, String.format("Using the fallback script of %s: %s", name, e.getMessage()));
+                return ((GroovyScript) script).evalFallback(getParameters());
+            }
+            throw e;
+        }
+        try (permit) {
+            final Object eval = script.eval(getParameters());
+            return eval;
+        }
     }
 
     /*
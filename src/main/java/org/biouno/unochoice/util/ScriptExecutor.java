@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import org.springframework.security.core.Authentication;
+
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>Runs scripts with a wall-clock timeout, so that a slow or hung script does not block the request
+ * thread rendering a parameter forever.</p>
+ *
+ * <p>Scripts with a timeout run on a separate thread, as the calling user and with the calling thread's
+ * context class loader. When the timeout expires, the thread is interrupted and the caller gets a
+ * {@link TimeoutException}. Scripts ignoring interruption keep running until they finish, but they do not
+ * hold the caller anymore. They are counted in {@link #getRunning()} until then.</p>
+ *
+ * <p>The number of threads running scripts, including the ones that timed out but are still running, is
+ * bounded by the system property {@code org.biouno.unochoice.util.ScriptExecutor.threads} (default {@code 32},
+ * read once). When they are all busy, scripts are rejected with a {@link RejectedExecutionException} instead of
+ * starting more threads, and the fallback script is used.</p>
+ *
+ * <p>The default timeout, used by scripts without their own, is set with the system property
+ * {@code org.biouno.unochoice.util.ScriptExecutor.timeout}, in seconds. The default value {@code 0} means no
+ * timeout: scripts run on the calling thread, as before, and nothing protects the request thread from a hung
+ * script. It is not enabled by default because scripts would then run outside of the Stapler request, where
+ * {@code Stapler.getCurrentRequest2()} returns {@code null}.</p>
+ *
+ * @since 2.8.9
+ */
+public final class ScriptExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(ScriptExecutor.class.getName());
+
+    /**
+     * Default timeout in seconds, {@code 0} for none, which is the default: scripts without a timeout of their own
+     * are not protected against hanging. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int DEFAULT_TIMEOUT = SystemProperties.getInteger(ScriptExecutor.class.getName() + ".timeout", 0);
+
+    /**
+     * Maximum number of threads running scripts, including the ones that timed out but are still running.
+     */
+    private static final int THREADS = SystemProperties.getInteger(ScriptExecutor.class.getName() + ".threads", 32);
+
+    private static final AtomicLong TIMEOUTS = new AtomicLong();
+    private static final AtomicLong REJECTIONS = new AtomicLong();
+    private static final AtomicLong RUNNING = new AtomicLong();
+
+    private ScriptExecutor() {}
+
+    /**
+     * Lazily created executor. Threads are created on demand, up to {@link #THREADS}, and discarded after a minute
+     * idle. Scripts are not queued, they are rejected when all the threads are busy.
+     */
+    private static final class ExecutorHolder {
+        private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(0, Math.max(1, THREADS),
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Active Choices script"));
+    }
+
+    /**
+     * Gets the timeout in effect for a script.
+     *
+     * @param timeout timeout of the script in seconds, {@code null} or {@code 0} to use the default timeout
+     * @return timeout in seconds, {@code 0} for none
+     */
+    public static int effectiveTimeout(Integer timeout) {
+        if (timeout != null && timeout > 0) {
+            return timeout;
+        }
+        return Math.max(0, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Runs the given script, waiting at most the given number of seconds for its result.
+     *
+     * @param name name used in the logs
+     * @param script script to run
+     * @param timeout timeout in seconds, {@code 0} or less to run the script on the calling thread
+     * @param <T> type of the result
+     * @return the result of the script
+     * @throws TimeoutException if the script did not finish in time
+     * @throws RejectedExecutionException if all the threads running scripts are busy
+     * @throws Exception if the script failed, or if the calling thread was interrupted while waiting
+     */
+    public static <T> T call(@NonNull String name, @NonNull Callable<T> script, int timeout) throws Exception {
+        if (timeout <= 0) {
+            return script.call();
+        }
+        final Authentication authentication = Jenkins.getAuthentication2();
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final Future<T> future;
+        try {
+            future = submit(script, authentication, contextClassLoader);
+        } catch (RejectedExecutionException e) {
+            REJECTIONS.incrementAndGet();
+            final String message = String.format("The %s was not run, all the %d threads running scripts are busy",
+                    name, Math.max(1, THREADS));
+            LOGGER.log(Level.WARNING, message);
+            throw new RejectedExecutionException(message, e);
+        }
+        try {
+            return future.get(timeout, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            TIMEOUTS.incrementAndGet();
+            final String message = String.format("The %s did not finish in %d second(s)", name, timeout);
+            LOGGER.log(Level.WARNING, message + ", cancelling it");
+            throw new TimeoutException(message);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                // e.g. ThreadDeath, StackOverflowError; rethrown on the caller thread as before
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static <T> Future<T> submit(Callable<T> script, Authentication authentication,
+            ClassLoader contextClassLoader) {
+        return ExecutorHolder.EXECUTOR.submit(() -> {
+            RUNNING.incrementAndGet();
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(contextClassLoader);
+            try (ACLContext ignored = ACL.as2(authentication)) {
+                return script.call();
+            } finally {
+                thread.setContextClassLoader(previous);
+                RUNNING.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * @return number of scripts that did not finish in time since Jenkins started
+     */
+    public static long getTimeouts() {
+        return TIMEOUTS.get();
+    }
+
+    /**
+     * @return number of scripts not run because all the threads running scripts were busy, since Jenkins started
+     */
+    public static long getRejections() {
+        return REJECTIONS.get();
+    }
+
+    /**
+     * @return number of scripts running on the executor, including the ones that timed out but ignore
+     * interruption
+     */
+    public static long getRunning() {
+        return RUNNING.get();
+    }
+}
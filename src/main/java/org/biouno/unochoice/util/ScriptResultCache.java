@@ -0,0 +1,222 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>Memoizes the results of parameter scripts, for parameters that opted in by setting a cache TTL.</p>
+ *
+ * <p>Results are keyed on the parameter random name (its UUID) and on the normalized values of the
+ * referenced parameters. The script used to produce a result is stored alongside it, so that a
+ * re-configured parameter (same random name, different script) never gets results from its old script.</p>
+ *
+ * <p>Maps and lists are copied when stored and when returned, so that callers changing the result they got,
+ * e.g. a map of choices, change neither the cached result nor the result of the other callers.</p>
+ *
+ * <p>The maximum number of entries can be set with the system property
+ * {@code org.biouno.unochoice.util.ScriptResultCache.maxSize} (default {@code 1000}).</p>
+ *
+ * @since 2.8.9
+ */
+public final class ScriptResultCache {
+
+    /**
+     * Maximum number of results kept in memory. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static int MAX_SIZE = SystemProperties.getInteger(ScriptResultCache.class.getName() + ".maxSize", 1000);
+
+    /**
+     * LRU map of results. Access is guarded by the map monitor.
+     */
+    private static final Map<Key, Entry> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private ScriptResultCache() {}
+
+    /**
+     * Gets a result that has not expired yet.
+     *
+     * @param randomName parameter random name
+     * @param script the script currently configured in the parameter
+     * @param parameters referenced parameter values
+     * @return a copy of the cached result, or {@code null} if there is none
+     */
+    public static @CheckForNull Object get(@NonNull String randomName, @NonNull Object script,
+                                           @NonNull Map<?, ?> parameters) {
+        final Key key = new Key(randomName, parameters);
+        synchronized (CACHE) {
+            final Entry entry = CACHE.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.script != script || entry.isExpired()) {
+                CACHE.remove(key);
+                return null;
+            }
+            return copy(entry.value);
+        }
+    }
+
+    /**
+     * Stores a result.
+     *
+     * @param randomName parameter random name
+     * @param script the script that produced the result
+     * @param parameters referenced parameter values
+     * @param value the script result
+     * @param ttlSeconds how long the result is valid for, in seconds
+     */
+    public static void put(@NonNull String randomName, @NonNull Object script, @NonNull Map<?, ?> parameters,
+                           @NonNull Object value, int ttlSeconds) {
+        if (MAX_SIZE <= 0 || ttlSeconds <= 0) {
+            return;
+        }
+        final long expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+        synchronized (CACHE) {
+            CACHE.put(new Key(randomName, parameters), new Entry(script, copy(value), expiresAt));
+        }
+    }
+
+    /**
+     * Removes every result of the given parameter.
+     *
+     * @param randomName parameter random name
+     */
+    public static void invalidate(@NonNull String randomName) {
+        synchronized (CACHE) {
+            final Iterator<Key> iterator = CACHE.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().randomName.equals(randomName)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the results.
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Copies maps and lists, keeping their order. Their elements, and other results, are not copied.
+     */
+    private static Object copy(Object value) {
+        if (value instanceof Map) {
+            return new LinkedHashMap<>((Map<?, ?>) value);
+        }
+        if (value instanceof List) {
+            return new ArrayList<>((List<?>) value);
+        }
+        return value;
+    }
+
+    /**
+     * Normalizes the referenced parameter values, so that the order in which the UI sent them, or the
+     * type of the values, does not produce different keys.
+     *
+     * @param parameters referenced parameter values
+     * @return sorted map of names and values as text
+     */
+    static @NonNull SortedMap<String, String> normalize(@NonNull Map<?, ?> parameters) {
+        if (parameters.isEmpty()) {
+            return Collections.emptySortedMap();
+        }
+        final SortedMap<String, String> normalized = new TreeMap<>();
+        for (Map.Entry<?, ?> parameter : parameters.entrySet()) {
+            if (parameter.getKey() != null) {
+                normalized.put(parameter.getKey().toString(), Objects.toString(parameter.getValue(), ""));
+            }
+        }
+        return normalized;
+    }
+
+    private static final class Entry {
+        private final Object script;
+        private final Object value;
+        private final long expiresAt;
+
+        Entry(Object script, Object value, long expiresAt) {
+            this.script = script;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+
+    private static final class Key {
+        private final String randomName;
+        private final SortedMap<String, String> parameters;
+
+        Key(String randomName, Map<?, ?> parameters) {
+            this.randomName = randomName;
+            this.parameters = normalize(parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(randomName, parameters);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return randomName.equals(other.randomName) && parameters.equals(other.parameters);
+        }
+    }
+}
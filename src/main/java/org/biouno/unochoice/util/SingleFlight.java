@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>Shares one in-flight evaluation between concurrent identical evaluations of a parameter script.</p>
+ *
+ * <p>When many users open the same job at the same time, each request evaluates the same script with the
+ * same referenced parameter values. Evaluations are keyed on the parameter random name, its script, the
+ * normalized values of the referenced parameters, and a scope. The first caller evaluates the script, and
+ * callers arriving while it runs wait for its result instead of evaluating the script again. Nothing is kept
+ * once the evaluation is over; see {@link ScriptResultCache} for that.</p>
+ *
+ * <p>Callers pass the user as the scope, unless results are already shared between users, so that users
+ * never see a result computed for another user without the parameter opting in.</p>
+ *
+ * <p>Enabled by default. Disable it with the system property
+ * {@code org.biouno.unochoice.util.SingleFlight.enabled=false}.</p>
+ *
+ * @since 2.8.9
+ */
+public final class SingleFlight {
+
+    /**
+     * Whether concurrent identical evaluations are shared. Not final so it can be changed from the script console.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Tunable from the script console")
+    public static boolean ENABLED = SystemProperties.getBoolean(SingleFlight.class.getName() + ".enabled", true);
+
+    private static final Map<Key, CompletableFuture<Object>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private static final AtomicLong SHARED = new AtomicLong();
+
+    private SingleFlight() {}
+
+    /**
+     * Evaluates a script, or waits for the identical evaluation already in flight.
+     *
+     * @param randomName parameter random name
+     * @param script parameter script
+     * @param parameters referenced parameter values
+     * @param scope additional part of the key, e.g. the user, or {@code null} to share between all callers
+     * @param evaluation evaluates the script
+     * @return result of the evaluation
+     */
+    public static Object evaluate(@NonNull String randomName, @NonNull Object script, @NonNull Map<?, ?> parameters,
+                                  @CheckForNull String scope, @NonNull Supplier<Object> evaluation) {
+        if (!ENABLED) {
+            return evaluation.get();
+        }
+        final Key key = new Key(randomName, script, ScriptResultCache.normalize(parameters), scope);
+        final CompletableFuture<Object> mine = new CompletableFuture<>();
+        final CompletableFuture<Object> inFlight = IN_FLIGHT.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            SHARED.incrementAndGet();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            final Object value = evaluation.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return number of evaluations that waited for an identical one instead of evaluating the script, since
+     * Jenkins started
+     */
+    public static long getShared() {
+        return SHARED.get();
+    }
+
+    /**
+     * @return number of evaluations in flight
+     */
+    public static int getInFlight() {
+        return IN_FLIGHT.size();
+    }
+
+    private static final class Key {
+        private final String randomName;
+        private final Object script;
+        private final SortedMap<String, String> parameters;
+        private final String scope;
+
+        Key(String randomName, Object script, SortedMap<String, String> parameters, String scope) {
+            this.randomName = randomName;
+            this.script = script;
+            this.parameters = parameters;
+            this.scope = scope;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(randomName, System.identityHashCode(script), parameters, scope);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return randomName.equals(other.randomName) && script == other.script
+                    && parameters.equals(other.parameters) && Objects.equals(scope, other.scope);
+        }
+    }
+}
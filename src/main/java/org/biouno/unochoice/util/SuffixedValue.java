@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A choice value with its {@code :selected} and {@code :disabled} suffixes decoded.
+ *
+ * <p>Scripts mark choices by appending these suffixes, in any order, e.g. {@code main:selected:disabled}. Both
+ * suffixes have the same length, so they are decoded in one pass by comparing the end of the text, without
+ * regular expressions. The bare value is the text itself when it has no suffix.</p>
+ *
+ * @since 2.8.9
+ */
+public final class SuffixedValue {
+
+    public static final String SELECTED_SUFFIX = ":selected";
+    public static final String DISABLED_SUFFIX = ":disabled";
+
+    static final int SELECTED = 1;
+    static final int DISABLED = 1 << 1;
+    private static final int FLAG_BITS = 2;
+    private static final int SUFFIX_LENGTH = SELECTED_SUFFIX.length();
+
+    private static final SuffixedValue EMPTY = new SuffixedValue("", false, false);
+
+    private final String value;
+    private final boolean selected;
+    private final boolean disabled;
+
+    private SuffixedValue(String value, boolean selected, boolean disabled) {
+        this.value = value;
+        this.selected = selected;
+        this.disabled = disabled;
+    }
+
+    /**
+     * Decodes the suffixes of a choice key or value.
+     *
+     * @param obj choice key or value
+     * @return the value without suffixes, and its flags. Blank values are empty
+     */
+    public static @NonNull SuffixedValue parse(@Nullable Object obj) {
+        if (obj == null) {
+            return EMPTY;
+        }
+        final String text = obj.toString();
+        if (StringUtils.isBlank(text)) {
+            return EMPTY;
+        }
+        final int decoded = decode(text);
+        return new SuffixedValue(strip(text, decoded), (decoded & SELECTED) != 0, (decoded & DISABLED) != 0);
+    }
+
+    /**
+     * @return the value, without the suffixes
+     */
+    public @NonNull String getValue() {
+        return value;
+    }
+
+    /**
+     * @return {@code true} if the value had the {@code :selected} suffix
+     */
+    public boolean isSelected() {
+        return selected;
+    }
+
+    /**
+     * @return {@code true} if the value had the {@code :disabled} suffix
+     */
+    public boolean isDisabled() {
+        return disabled;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    /**
+     * Decodes the suffixes of a text, looking at most at its last two suffixes. A repeated suffix is only
+     * removed once, e.g. {@code a:selected:selected} is {@code a:selected}, selected.
+     *
+     * @param text text
+     * @return the {@link #SELECTED} and {@link #DISABLED} flags in the lowest bits, and the length of the text
+     *         without the suffixes in the others. Nothing is allocated
+     */
+    static int decode(@NonNull String text) {
+        int end = text.length();
+        final int last = suffixAt(text, end);
+        if (last == 0) {
+            return end << FLAG_BITS;
+        }
+        end -= SUFFIX_LENGTH;
+        final int previous = suffixAt(text, end);
+        if (previous == 0 || previous == last) {
+            return end << FLAG_BITS | last;
+        }
+        return (end - SUFFIX_LENGTH) << FLAG_BITS | last | previous;
+    }
+
+    /**
+     * @param text text
+     * @param decoded result of {@link #decode(String)} for the text
+     * @return the text without the suffixes, the text itself if it has none
+     */
+    static @NonNull String strip(@NonNull String text, int decoded) {
+        final int length = decoded >>> FLAG_BITS;
+        return length == text.length() ? text : text.substring(0, length);
+    }
+
+    private static int suffixAt(String text, int end) {
+        final int start = end - SUFFIX_LENGTH;
+        if (start < 0 || text.charAt(start) != ':') {
+            return 0;
+        }
+        if (text.regionMatches(start, SELECTED_SUFFIX, 0, SUFFIX_LENGTH)) {
+            return SELECTED;
+        }
+        if (text.regionMatches(start, DISABLED_SUFFIX, 0, SUFFIX_LENGTH)) {
+            return DISABLED;
+        }
+        return 0;
+    }
+}
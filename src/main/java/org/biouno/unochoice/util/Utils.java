@@ -27,8 +27,12 @@ package org.biouno.unochoice.util;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -49,15 +53,13 @@ import org.biouno.unochoice.AbstractUnoChoiceParameter;
 
 import hudson.model.Item;
 import hudson.model.Items;
+import hudson.model.Job;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.Project;
 import hudson.security.ACL;
-import hudson.slaves.EnvironmentVariablesNodeProperty;
-import hudson.slaves.NodeProperty;
-import hudson.slaves.NodePropertyDescriptor;
+import hudson.security.ACLContext;
 import hudson.tasks.BuildWrapper;
-import hudson.util.DescribableList;
 import hudson.util.ReflectionUtils;
 import jenkins.model.Jenkins;
 import org.springframework.security.core.Authentication;
@@ -76,6 +78,17 @@ public class Utils {
 
     // --- methods called from Jelly pages
 
+    /**
+     * Decodes the :selected and :disabled suffixes of a parameter value in one pass.
+     *
+     * @param obj parameter value
+     * @return the parameter value without suffixes, and whether it was selected or disabled
+     * @since 2.8.9
+     */
+    public static @NonNull SuffixedValue parseSuffixes(@Nullable Object obj) {
+        return SuffixedValue.parse(obj);
+    }
+
     /**
      * Checks whether a parameter value contains the :selected suffix, returning
      * {@code true} if it does, {@code false} otherwise.
@@ -86,8 +99,7 @@ public class Utils {
     public static boolean isSelected(@Nullable Object obj) {
         if (obj == null)
             return false;
-        final String text = obj.toString();
-        return StringUtils.isNotBlank(text) && (text.endsWith(":selected") || text.endsWith(":selected:disabled"));
+        return (SuffixedValue.decode(obj.toString()) & SuffixedValue.SELECTED) != 0;
     }
 
     /**
@@ -102,9 +114,11 @@ public class Utils {
         final String text = obj.toString();
         if (StringUtils.isBlank(text))
             return "";
-        if (isSelected(text))
-            return text.replaceAll(":selected$", "").replaceAll(":selected:disabled$", ":disabled");
-        return text;
+        final int decoded = SuffixedValue.decode(text);
+        if ((decoded & SuffixedValue.SELECTED) == 0)
+            return text;
+        final String value = SuffixedValue.strip(text, decoded);
+        return (decoded & SuffixedValue.DISABLED) != 0 ? value + SuffixedValue.DISABLED_SUFFIX : value;
     }
 
     /**
@@ -117,8 +131,7 @@ public class Utils {
     public static boolean isDisabled(@Nullable Object obj) {
         if (obj == null)
             return false;
-        final String text = obj.toString();
-        return StringUtils.isNotBlank(text) && (text.endsWith(":disabled") || text.endsWith(":disabled:selected"));
+        return (SuffixedValue.decode(obj.toString()) & SuffixedValue.DISABLED) != 0;
     }
 
     /**
@@ -133,9 +146,11 @@ public class Utils {
         final String text = obj.toString();
         if (StringUtils.isBlank(text))
             return "";
-        if (isDisabled(text))
-            return text.replaceAll(":disabled$", "").replaceAll(":disabled:selected$", ":selected");
-        return text;
+        final int decoded = SuffixedValue.decode(text);
+        if ((decoded & SuffixedValue.DISABLED) == 0)
+            return text;
+        final String value = SuffixedValue.strip(text, decoded);
+        return (decoded & SuffixedValue.SELECTED) != 0 ? value + SuffixedValue.SELECTED_SUFFIX : value;
     }
 
     /**
@@ -150,9 +165,7 @@ public class Utils {
         final String text = obj.toString();
         if (StringUtils.isBlank(text))
             return "";
-        if (isSelected(text) || isDisabled(text))
-            return escapeSelected(escapeDisabled(text));
-        return text;
+        return SuffixedValue.strip(text, SuffixedValue.decode(text));
     }
 
     /**
@@ -177,10 +190,17 @@ public class Utils {
      * over calling the System.getenv method directly, is that we can mock this call
      * (System is final).
      *
-     * @return System environment variables as map
+     * <p>The environment of the process does not change, so it is copied once into an immutable map, which
+     * is faster to read than the view returned by System.getenv.</p>
+     *
+     * @return System environment variables as an unmodifiable map
      */
     public static @NonNull Map<String, String> getSystemEnv() {
-        return System.getenv();
+        return SystemEnvHolder.SYSTEM_ENV;
+    }
+
+    private static final class SystemEnvHolder {
+        private static final Map<String, String> SYSTEM_ENV = Collections.unmodifiableMap(new HashMap<>(System.getenv()));
     }
 
     /**
@@ -214,8 +234,20 @@ public class Utils {
     @SuppressWarnings("rawtypes")
     public static @CheckForNull Project findProjectByParameterUUID(@NonNull String parameterUUID) {
         Authentication auth = Jenkins.getAuthentication2();
+        final String fullName = ParameterProjectIndex.getProjectFullName(parameterUUID);
+        if (fullName != null) {
+            final Project p;
+            try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+                p = Jenkins.get().getItemByFullName(fullName, Project.class);
+            }
+            // the entry may be stale, or the user may not see this project; then we fall back to the scan
+            if (p != null && isParameterDefinitionOf(parameterUUID, p) && p.getACL().hasPermission2(auth, Item.READ)) {
+                return p;
+            }
+        }
         for (Project p : Items.allItems2(ACL.SYSTEM2, Jenkins.get(), Project.class)) {
-            if (isParameterDefinitionOf(parameterUUID, p) && p.getACL().hasPermission2(auth, Item.READ)) {
+            // indexing while scanning means the next lookup of any parameter seen here is O(1)
+            if (ParameterProjectIndex.index(p).contains(parameterUUID) && p.getACL().hasPermission2(auth, Item.READ)) {
                 return p;
             }
         }
@@ -232,11 +264,7 @@ public class Utils {
      * @return {@code true} if the project contains this parameter definition.
      */
     private static boolean isParameterDefinitionOf(@NonNull String parameterUUID, @NonNull Project<?, ?> project) {
-        List<ParameterDefinition> parameterDefinitions = new ArrayList<>(getProjectParameterDefinitions(project));
-        for (List<ParameterDefinition> params : getBuildWrapperParameterDefinitions(project).values()) {
-            parameterDefinitions.addAll(params);
-        }
-        for (ParameterDefinition pd : parameterDefinitions) {
+        for (ParameterDefinition pd : getAllParameterDefinitions(project)) {
             if (pd instanceof AbstractUnoChoiceParameter) {
                 AbstractUnoChoiceParameter parameterDefinition = (AbstractUnoChoiceParameter) pd;
                 String uuid = parameterDefinition.getRandomName();
@@ -248,6 +276,38 @@ public class Utils {
         return false;
     }
 
+    /**
+     * Get the parameter definitions of the given project, including those associated with its
+     * {@link BuildWrapper}s.
+     *
+     * @since 2.8.9
+     * @param project the project for which the parameter definitions should be found
+     * @return parameter definitions or an empty list
+     */
+    public static @NonNull List<ParameterDefinition> getAllParameterDefinitions(@NonNull Project<?, ?> project) {
+        List<ParameterDefinition> parameterDefinitions = new ArrayList<>(getProjectParameterDefinitions(project));
+        for (List<ParameterDefinition> params : getBuildWrapperParameterDefinitions(project).values()) {
+            parameterDefinitions.addAll(params);
+        }
+        return parameterDefinitions;
+    }
+
+    /**
+     * Get the parameter definitions of the given job. For projects, this includes those associated with
+     * their {@link BuildWrapper}s.
+     *
+     * @since 2.8.9
+     * @param job the job for which the parameter definitions should be found
+     * @return parameter definitions or an empty list
+     */
+    public static @NonNull List<ParameterDefinition> getAllParameterDefinitions(@NonNull Job<?, ?> job) {
+        if (job instanceof Project) {
+            return getAllParameterDefinitions((Project<?, ?>) job);
+        }
+        final ParametersDefinitionProperty property = job.getProperty(ParametersDefinitionProperty.class);
+        return property != null ? property.getParameterDefinitions() : Collections.emptyList();
+    }
+
     /**
      * Get the parameter definitions for the given project.
      *
@@ -271,21 +331,11 @@ public class Utils {
      * Get a map with the global node properties.
      *
      * @since 1.6
-     * @return map with global node properties
+     * @return unmodifiable map with global node properties, shared between callers (since 2.8.9)
+     * @see GlobalNodeProperties
      */
     public static @NonNull Map<String, Object> getGlobalNodeProperties() {
-        Map<String, Object> map = new HashMap<>();
-        Jenkins instance = Jenkins.get();
-        DescribableList<NodeProperty<?>, NodePropertyDescriptor> globalNodeProperties = instance.getGlobalNodeProperties();
-        if (globalNodeProperties != null) {
-            for (NodeProperty<?> nodeProperty : globalNodeProperties) {
-                if (nodeProperty instanceof EnvironmentVariablesNodeProperty) {
-                    EnvironmentVariablesNodeProperty envNodeProperty = (EnvironmentVariablesNodeProperty) nodeProperty;
-                    map.putAll(envNodeProperty.getEnvVars());
-                }
-            }
-        }
-        return map;
+        return GlobalNodeProperties.get();
     }
 
     /**
@@ -301,27 +351,14 @@ public class Utils {
         List<ParameterDefinition> value = new ArrayList<>();
 
         for (BuildWrapper buildWrapper : buildWrappersList) {
-            final PropertyDescriptor[] propertyDescriptors;
-            try {
-                propertyDescriptors = Introspector.getBeanInfo(buildWrapper.getClass()).getPropertyDescriptors();
-            } catch (IntrospectionException e) {
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.log(Level.FINE,
-                            String.format("Introspector.getBeanInfo failed for build wrapper class: [%s]",
-                                    buildWrapper.getClass()
-                                            .getCanonicalName()),
-                            e);
-                }
-                continue;
-            }
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+            for (ParameterAccessor accessor : PARAMETER_ACCESSORS.get(buildWrapper.getClass())) {
                 try {
-                    addParameterDefinitionsTo(value, buildWrapper, propertyDescriptor);
+                    accessor.addParameterDefinitionsTo(value, buildWrapper);
                 } catch (RuntimeException e) {
                     if (LOGGER.isLoggable(Level.FINE)) {
                         LOGGER.log(Level.FINE,
                                 String.format("Failed to add parameter [%s] to the ParameterDefinition list",
-                                        propertyDescriptor.getName()),
+                                        accessor.name),
                                 e);
                     }
                 }
@@ -334,49 +371,123 @@ public class Utils {
         return result.isEmpty() ? Collections.emptyMap() : result;
     }
 
-    private static void addParameterDefinitionsTo(List<ParameterDefinition> target, Object bean, PropertyDescriptor pd) {
-        if (ParameterDefinition.class.isAssignableFrom(pd.getPropertyType())) {
-            final ParameterDefinition param = read(bean, pd);
-            if (param != null) {
-                target.add(param);
-            }
-            return;
-        }
-        Iterable<?> iterable = null;
-
-        if (Iterable.class.isAssignableFrom(pd.getPropertyType())) {
-            iterable = read(bean, pd);
-        } else if (Object[].class.isAssignableFrom(pd.getPropertyType())) {
-            final Object[] array = read(bean, pd);
-            if (array != null)
-                iterable = Arrays.asList(array);
+    /**
+     * Accessors of the properties that may hold parameter definitions, per build wrapper class. The bean
+     * introspection runs once per class. Reloading a plug-in creates new classes, with their own entries,
+     * and {@link ClassValue} does not prevent the old classes from being unloaded.
+     */
+    private static final ClassValue<List<ParameterAccessor>> PARAMETER_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected List<ParameterAccessor> computeValue(Class<?> type) {
+            return findParameterAccessors(type);
         }
-        if (iterable == null)
-            return;
+    };
 
-        for (Object o : iterable) {
-            if (o instanceof ParameterDefinition) {
-                target.add((ParameterDefinition) o);
+    private static @NonNull List<ParameterAccessor> findParameterAccessors(@NonNull Class<?> type) {
+        final PropertyDescriptor[] propertyDescriptors;
+        try {
+            propertyDescriptors = Introspector.getBeanInfo(type).getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                        String.format("Introspector.getBeanInfo failed for build wrapper class: [%s]",
+                                type.getCanonicalName()),
+                        e);
             }
+            return Collections.emptyList();
         }
+        final List<ParameterAccessor> accessors = new ArrayList<>();
+        for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+            final Class<?> propertyType = propertyDescriptor.getPropertyType();
+            if (propertyType == null
+                    || !(ParameterDefinition.class.isAssignableFrom(propertyType)
+                        || Iterable.class.isAssignableFrom(propertyType)
+                        || Object[].class.isAssignableFrom(propertyType))) {
+                continue;
+            }
+            try {
+                final MethodHandle getter = findGetter(type, propertyDescriptor);
+                if (getter != null) {
+                    accessors.add(new ParameterAccessor(propertyDescriptor.getName(), propertyType, getter));
+                }
+            } catch (IllegalAccessException e) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE,
+                            String.format("Cannot access property [%s] of build wrapper class: [%s]",
+                                    propertyDescriptor.getName(), type.getCanonicalName()),
+                            e);
+                }
+            }
+        }
+        return accessors.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(accessors);
     }
 
-    private static <T> T read(Object bean, PropertyDescriptor pd) {
+    private static @CheckForNull MethodHandle findGetter(Class<?> type, PropertyDescriptor pd) throws IllegalAccessException {
+        final MethodType getterType = MethodType.methodType(Object.class, Object.class);
+        // like the reflection used before, read getters of non-public classes and non-public fields too
         final Method accessor = pd.getReadMethod();
         if ((accessor != null) && (accessor.getParameterTypes().length == 0)) {
-            @SuppressWarnings("unchecked")
-            final T result = (T) ReflectionUtils.invokeMethod(accessor, bean);
-            return result;
+            accessor.trySetAccessible();
+            return MethodHandles.lookup().unreflect(accessor).asType(getterType);
         }
-        final Field field = ReflectionUtils.findField(bean.getClass(), pd.getName());
+        final Field field = ReflectionUtils.findField(type, pd.getName());
         if (field != null) {
-            final Object value = ReflectionUtils.getField(field, bean);
-            if (pd.getPropertyType().isInstance(value)) {
-                @SuppressWarnings("unchecked")
-                final T result = (T) value;
-                return result;
+            field.trySetAccessible();
+            MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
             }
+            return getter.asType(getterType);
         }
         return null;
     }
+
+    /**
+     * A property of a build wrapper that may hold a parameter definition, an {@link Iterable} or an array of them.
+     */
+    private static final class ParameterAccessor {
+        private final String name;
+        private final Class<?> propertyType;
+        private final MethodHandle getter;
+
+        ParameterAccessor(String name, Class<?> propertyType, MethodHandle getter) {
+            this.name = name;
+            this.propertyType = propertyType;
+            this.getter = getter;
+        }
+
+        void addParameterDefinitionsTo(List<ParameterDefinition> target, Object bean) {
+            final Object value = read(bean);
+            if (value instanceof ParameterDefinition) {
+                target.add((ParameterDefinition) value);
+                return;
+            }
+            Iterable<?> iterable = null;
+            if (value instanceof Iterable) {
+                iterable = (Iterable<?>) value;
+            } else if (value instanceof Object[]) {
+                iterable = Arrays.asList((Object[]) value);
+            }
+            if (iterable == null)
+                return;
+
+            for (Object o : iterable) {
+                if (o instanceof ParameterDefinition) {
+                    target.add((ParameterDefinition) o);
+                }
+            }
+        }
+
+        private Object read(Object bean) {
+            final Object value;
+            try {
+                value = (Object) getter.invokeExact(bean);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+            return propertyType.isInstance(value) ? value : null;
+        }
+    }
 }
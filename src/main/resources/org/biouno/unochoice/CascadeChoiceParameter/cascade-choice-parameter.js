@@ -5,7 +5,7 @@ if (window.makeStaplerProxy) {
 
 window.addEventListener("DOMContentLoaded", () => {
     document.querySelectorAll(".cascade-choice-parameter-data-holder").forEach((dataHolder) => {
-        const { name, paramName, randomName, proxyName } = dataHolder.dataset;
+        const { name, paramName, randomName, proxyName, jobFullName } = dataHolder.dataset;
         const referencedParameters = dataHolder.dataset.referencedParameters;
         if (referencedParameters === undefined || referencedParameters === null || referencedParameters.length === 0) {
             console.log(`[${name}] - cascade-choice-parameters.js#querySelectorAll#forEach - No parameters referenced!`);
@@ -14,8 +14,9 @@ window.addEventListener("DOMContentLoaded", () => {
         const referencedParametersList = dataHolder.dataset.referencedParameters.split(",").map((val) => val.trim());
         const filterable = dataHolder.dataset.filterable === "true";
         const filterLength = parseInt(dataHolder.dataset.filterLength);
+        const debounce = parseInt(dataHolder.dataset.debounce);
 
-        UnoChoice.renderCascadeChoiceParameter(`#${paramName}`, filterable, name, randomName, filterLength, paramName, referencedParametersList, window[proxyName]);
+        UnoChoice.renderCascadeChoiceParameter(`#${paramName}`, filterable, name, randomName, filterLength, paramName, referencedParametersList, window[proxyName], jobFullName, debounce);
     });
 
     if (window.makeStaplerProxy && window.__old__makeStaplerProxy) {
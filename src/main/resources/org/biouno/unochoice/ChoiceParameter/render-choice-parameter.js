@@ -1,6 +1,7 @@
 window.addEventListener("DOMContentLoaded", () => {
     document.querySelectorAll(".choice-parameter-data-holder").forEach((dataHolder) => {
-        const { paramName, filterLength } = dataHolder.dataset;
-        UnoChoice.renderChoiceParameter(paramName, filterLength);
+        const { paramName, filterLength, name, randomName, filterProxyName, filterLimit } = dataHolder.dataset;
+        const filterProxy = filterProxyName ? window[filterProxyName] : undefined;
+        UnoChoice.renderChoiceParameter(paramName, filterLength, name, randomName, filterProxy, Number(filterLimit));
     });
 });
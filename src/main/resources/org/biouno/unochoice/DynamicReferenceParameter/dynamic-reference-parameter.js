@@ -5,15 +5,16 @@ if (window.makeStaplerProxy) {
 
 window.addEventListener("DOMContentLoaded", () => {
     document.querySelectorAll(".dynamic-reference-parameter-data-holder").forEach((dataHolder) => {
-        const { name, paramName, proxyName } = dataHolder.dataset;
+        const { name, paramName, proxyName, jobFullName } = dataHolder.dataset;
         const referencedParameters = dataHolder.dataset.referencedParameters;
         if (referencedParameters === undefined || referencedParameters === null || referencedParameters.length === 0) {
             console.log(`[${name}] - dynamic-reference-parameter.js#querySelectorAll#forEach - No parameters referenced!`);
             return;
         }
         const referencedParametersList = dataHolder.dataset.referencedParameters.split(",").map((val) => val.trim());
+        const debounce = parseInt(dataHolder.dataset.debounce);
 
-        UnoChoice.renderDynamicRenderParameter(`#${paramName}`, name, paramName, referencedParametersList, window[proxyName]);
+        UnoChoice.renderDynamicRenderParameter(`#${paramName}`, name, paramName, referencedParametersList, window[proxyName], jobFullName, debounce);
 
         // update spinner id
         var rootElmt = document.querySelector(`#${paramName}`);
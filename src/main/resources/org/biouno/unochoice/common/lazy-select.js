@@ -0,0 +1,10 @@
+window.addEventListener("DOMContentLoaded", () => {
+    document.querySelectorAll(".ac-lazy-select").forEach((element) => {
+        const { proxyName, pageSize, filterLength, referencedParameters } = element.dataset;
+        const lazySelect = new UnoChoice.LazySelect(element, window[proxyName], parseInt(pageSize), parseInt(filterLength));
+        // cascade parameters load their choices once the values of the referenced parameters are known
+        if (!referencedParameters) {
+            lazySelect.load(true);
+        }
+    });
+});
@@ -0,0 +1,16 @@
+window.addEventListener("DOMContentLoaded", () => {
+    document.querySelectorAll(".ac-refresh").forEach((button) => {
+        const { proxyName, name } = button.dataset;
+        button.addEventListener("click", () => {
+            window[proxyName].refreshChoices(() => {
+                // reactive parameters can be re-evaluated in place; other parameters are rendered by the server
+                const cascadeParameter = UnoChoice.cascadeParameters.find((p) => p.getParameterName() === name);
+                if (cascadeParameter) {
+                    cascadeParameter.update(false);
+                } else {
+                    window.location.reload();
+                }
+            });
+        });
+    });
+});
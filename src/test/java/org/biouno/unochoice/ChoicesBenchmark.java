@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+
+/**
+ * Benchmarks {@link AbstractScriptableParameter#getChoices(Map)} for scripts returning a list, converted to a
+ * map, and for scripts returning a map, and {@link AbstractScriptableParameter#getChoiceList(Map)}, converting
+ * them to typed choices.
+ */
+public class ChoicesBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class JenkinsState extends JmhBenchmarkState {
+
+        @Param({"10", "1000"})
+        public int size;
+
+        ChoiceParameter listParameter;
+        ChoiceParameter mapParameter;
+
+        @Override
+        public void setup() throws Exception {
+            listParameter = parameter("def choices = []; for (int i = 0; i < " + size
+                    + "; i++) { choices.add('value' + i) }; return choices");
+            mapParameter = parameter("def choices = [:]; for (int i = 0; i < " + size
+                    + "; i++) { choices.put('key' + i, 'value' + i) }; return choices");
+        }
+
+        private static ChoiceParameter parameter(String script) throws Exception {
+            ScriptApproval.get().preapprove(script, GroovyLanguage.get());
+            return new ChoiceParameter("param", "description", "random-name",
+                    new GroovyScript(new SecureGroovyScript(script, false, null), null),
+                    ChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+        }
+    }
+
+    @Benchmark
+    public Map<Object, Object> listChoices(JenkinsState state) {
+        return state.listParameter.getChoices(Collections.emptyMap());
+    }
+
+    @Benchmark
+    public Map<Object, Object> mapChoices(JenkinsState state) {
+        return state.mapParameter.getChoices(Collections.emptyMap());
+    }
+
+    @Benchmark
+    public List<Choice> listChoiceList(JenkinsState state) {
+        return state.listParameter.getChoiceList(Collections.emptyMap());
+    }
+
+    @Benchmark
+    public List<Choice> mapChoiceList(JenkinsState state) {
+        return state.mapParameter.getChoiceList(Collections.emptyMap());
+    }
+}
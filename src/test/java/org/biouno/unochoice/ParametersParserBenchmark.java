@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares {@link AbstractScriptableParameter#parseParameters(String)} with the {@code String.split} based parser
+ * it replaced, on the payloads sent by the UI when referenced parameters change.
+ */
+@State(Scope.Benchmark)
+public class ParametersParserBenchmark {
+
+    /**
+     * Number of referenced parameters.
+     */
+    @Param({"3", "30"})
+    public int parameters;
+
+    /**
+     * Length of the values. Every other value contains {@code =}, like the values of maps returned by scripts.
+     */
+    @Param({"16", "1024"})
+    public int valueLength;
+
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        StringJoiner joiner = new StringJoiner(AbstractScriptableParameter.SEPARATOR);
+        for (int i = 0; i < parameters; i++) {
+            StringBuilder value = new StringBuilder(i % 2 == 0 ? "key=" : "");
+            while (value.length() < valueLength) {
+                value.append((char) ('a' + value.length() % 26));
+            }
+            joiner.add("PARAMETER_" + i + AbstractScriptableParameter.EQUALS + value);
+        }
+        payload = joiner.toString();
+    }
+
+    @Benchmark
+    public Map<Object, Object> singlePass() {
+        return AbstractScriptableParameter.parseParameters(payload);
+    }
+
+    @Benchmark
+    public Map<Object, Object> split() {
+        return splitParameters(payload);
+    }
+
+    /**
+     * The parser used before 2.8.9.
+     */
+    private static Map<Object, Object> splitParameters(String parameters) {
+        final Map<Object, Object> values = new LinkedHashMap<>();
+        final String[] params = parameters.split(AbstractScriptableParameter.SEPARATOR);
+        for (String param : params) {
+            final String[] nameValue = param.split(AbstractScriptableParameter.EQUALS);
+            if (nameValue.length == 1) {
+                final String name = nameValue[0].trim();
+                if (!name.isEmpty())
+                    values.put(name, "");
+            } else if (nameValue.length == 2) {
+                values.put(nameValue[0], nameValue[1]);
+            } else if (nameValue.length > 2) {
+                final StringBuilder sb = new StringBuilder();
+                for (int i = 1; i < nameValue.length; ++i) {
+                    sb.append(nameValue[i]);
+                    if (i + 1 < nameValue.length) {
+                        sb.append(AbstractScriptableParameter.EQUALS);
+                    }
+                }
+                values.put(nameValue[0], sb.toString());
+            }
+        }
+        return values;
+    }
+}
@@ -26,8 +26,11 @@ package org.biouno.unochoice;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import hudson.model.Descriptor;
@@ -118,4 +121,59 @@ class TestCascadeChoiceParameter {
         assertEquals(Integer.valueOf(5), param.getFilterLength());
     }
 
+    @Test
+    void testParseParameters() {
+        Map<Object, Object> expected = new LinkedHashMap<>();
+        expected.put("A", "1=2");
+        expected.put("B", "");
+        expected.put("C", "");
+        expected.put("D", "abc==");
+        expected.put("E ", " x ");
+        assertEquals(expected, AbstractScriptableParameter.parseParameters(
+                "A=1=2__LESEP__ B __LESEP__C=__LESEP____LESEP__D=abc==__LESEP__E = x __LESEP__"));
+        assertTrue(AbstractScriptableParameter.parseParameters("").isEmpty());
+        assertTrue(AbstractScriptableParameter.parseParameters("__LESEP__").isEmpty());
+    }
+
+    @Test
+    void testEvaluateChoicesForUI() throws Descriptor.FormException {
+        String referencingScript = "return [param001 + '1', param002 + '2']";
+        ScriptApproval.get().preapprove(referencingScript, GroovyLanguage.get());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(referencingScript, Boolean.FALSE, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+        CascadeChoiceParameter param = new CascadeChoiceParameter("param000", "description", "some-random-name", script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "param001, param002", false, 0);
+
+        List<Object> choices = param.evaluateChoicesForUI("param001=A__LESEP__param002=B=C");
+        assertEquals(Arrays.asList("A1", "B=C2"), new ArrayList<>((Collection<?>) choices.get(0)));
+        // the values are not stored in the parameter, shared by every user of the job
+        assertTrue(param.getParameters().isEmpty());
+
+        choices = param.evaluateChoicesForUI("param001=X__LESEP__param002=Y");
+        assertEquals(Arrays.asList("X1", "Y2"), new ArrayList<>((Collection<?>) choices.get(0)));
+    }
+
+    @Test
+    void testDebounce() throws Descriptor.FormException {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(SCRIPT, Boolean.FALSE, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+        CascadeChoiceParameter param = new CascadeChoiceParameter("param000", "description", "some-random-name", script,
+                CascadeChoiceParameter.ELEMENT_TYPE_FORMATTED_HIDDEN_HTML, "param001, param002", true, 0);
+
+        assertNull(param.getDebounce());
+        assertEquals(AbstractCascadableParameter.DEFAULT_DEBOUNCE, param.getEffectiveDebounce());
+        // updated on every change by default
+        assertEquals(0, param.getEffectiveDebounce());
+
+        param.setDebounce(0);
+        assertEquals(Integer.valueOf(0), param.getDebounce());
+        assertEquals(0, param.getEffectiveDebounce());
+
+        param.setDebounce(500);
+        assertEquals(500, param.getEffectiveDebounce());
+
+        param.setDebounce(-1);
+        assertNull(param.getDebounce());
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.biouno.unochoice.model.GroovyScript;
+import org.biouno.unochoice.util.ScriptBulkhead;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class TestCascadeUpdateAction {
+
+    private static GroovyScript script(String text) throws Exception {
+        ScriptApproval.get().preapprove(text, GroovyLanguage.get());
+        return new GroovyScript(new SecureGroovyScript(text, false, null), null);
+    }
+
+    @Test
+    void testUpdateCascade(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("cascade");
+        CascadeChoiceParameter b = new CascadeChoiceParameter("B", "", "random-b",
+                script("return [A + '1', A + '2:selected']"), CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT,
+                "A", false, 0);
+        CascadeChoiceParameter c = new CascadeChoiceParameter("C", "", "random-c",
+                script("return [B + 'x']"), CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "B", false, 0);
+        DynamicReferenceParameter d = new DynamicReferenceParameter("D", "", "random-d",
+                script("return '<b>' + C + '</b>'"), DynamicReferenceParameter.ELEMENT_TYPE_FORMATTED_HTML, "C", false);
+        CascadeChoiceParameter e = new CascadeChoiceParameter("E", "", "random-e",
+                script("return [D]"), CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "D", false, 0);
+        CascadeChoiceParameter unrelated = new CascadeChoiceParameter("F", "", "random-f",
+                script("return ['f']"), CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "Z", false, 0);
+        project.addProperty(new ParametersDefinitionProperty(
+                new StringParameterDefinition("A", "a"), e, d, c, b, unrelated));
+
+        JSONObject formState = new JSONObject();
+        formState.put("A", "z");
+        formState.put("B", "old");
+        formState.put("C", "old");
+        JSONObject response = CascadeUpdateAction.get().updateCascade("cascade", "A", formState.toString());
+
+        JSONArray results = response.getJSONArray("results");
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            names.add(results.getJSONObject(i).getString("name"));
+        }
+        assertEquals(List.of("B", "C", "D"), names);
+        // C is evaluated with the value B has once rendered, not with the old value of the form
+        assertEquals("z2x", results.getJSONObject(1).getJSONArray("choices").getJSONArray(1).getString(0));
+        assertEquals("<b>z2x</b>", results.getJSONObject(2).getString("value"));
+        // E depends on the rendered HTML of D, so the UI updates it
+        assertEquals(List.of("E"), new ArrayList<>(response.getJSONArray("pending")));
+    }
+
+    @Test
+    void testEvaluationsAreLimitedPerJob(JenkinsRule j) throws Exception {
+        ScriptApproval.get().preapprove("return [A]", GroovyLanguage.get());
+        ScriptApproval.get().preapprove("return ['fallback']", GroovyLanguage.get());
+        // a copy of the job, with the same parameter random names, found first when looking them up
+        for (String name : List.of("original", "limited")) {
+            GroovyScript script = new GroovyScript(new SecureGroovyScript("return [A]", false, null),
+                    new SecureGroovyScript("return ['fallback']", false, null));
+            CascadeChoiceParameter b = new CascadeChoiceParameter("B", "", "random-b", script,
+                    CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "A", false, 0);
+            j.createFreeStyleProject(name).addProperty(new ParametersDefinitionProperty(
+                    new StringParameterDefinition("A", "a"), b));
+        }
+
+        ScriptBulkhead.setLimits(0, 1);
+        ScriptBulkhead.MAX_WAITING = 0;
+        try (ScriptBulkhead.Permit ignored = ScriptBulkhead.acquire("limited")) {
+            JSONObject response = CascadeUpdateAction.get().updateCascade("limited", "A", "{\"A\":\"z\"}");
+            // the script of the job being updated was rejected, so the fallback script was used
+            assertEquals("fallback", response.getJSONArray("results").getJSONObject(0).getJSONArray("choices")
+                    .getJSONArray(1).getString(0));
+        } finally {
+            ScriptBulkhead.setLimits(0, 0);
+            ScriptBulkhead.MAX_WAITING = 100;
+        }
+        JSONObject response = CascadeUpdateAction.get().updateCascade("limited", "A", "{\"A\":\"z\"}");
+        assertEquals("z", response.getJSONArray("results").getJSONObject(0).getJSONArray("choices")
+                .getJSONArray(1).getString(0));
+    }
+
+    @Test
+    void testUnknownJob(JenkinsRule j) {
+        assertThrows(IllegalArgumentException.class,
+                () -> CascadeUpdateAction.get().updateCascade("missing", "A", "{}"));
+    }
+}
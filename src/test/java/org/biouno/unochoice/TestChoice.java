@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import hudson.model.Descriptor;
+import hudson.model.StringParameterValue;
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Tests for {@link Choice}.
+ */
+@WithJenkins
+class TestChoice {
+
+    @Test
+    void testFromLegacyList(JenkinsRule j) {
+        List<Choice> choices = Choice.fromScriptResult(
+                Arrays.asList("a", "b:selected", "c:disabled:selected", "a", "d:disabled"));
+        assertEquals(Arrays.asList(
+                new Choice("a", "a", false, false),
+                new Choice("b", "b", true, false),
+                new Choice("c", "c", true, true),
+                new Choice("d", "d", false, true)), choices);
+    }
+
+    @Test
+    void testFromLegacyMap(JenkinsRule j) {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("1:selected", "One:selected");
+        map.put(2, "Two");
+        map.put("3", new Choice("3", "Three", false, true));
+        assertEquals(Arrays.asList(
+                new Choice("1", "One", true, false),
+                new Choice("2", "Two", false, false),
+                new Choice("3", "Three", false, true)), Choice.fromScriptResult(map));
+        assertTrue(Choice.fromScriptResult("text").isEmpty());
+        assertTrue(Choice.fromScriptResult(null).isEmpty());
+    }
+
+    @Test
+    void testToSuffixedMap(JenkinsRule j) {
+        Map<Object, Object> legacy = new LinkedHashMap<>();
+        legacy.put("a", "A:selected");
+        // maps without choices are not copied
+        assertSame(legacy, Choice.toSuffixedMap(legacy));
+
+        Map<Object, Object> expected = new LinkedHashMap<>();
+        expected.put("a", "A:selected:disabled");
+        expected.put("b", "b");
+        assertEquals(expected, Choice.toSuffixedMap(Arrays.asList(new Choice("a", "A", true, true), "b")));
+        assertNull(Choice.toSuffixedMap("text"));
+    }
+
+    @Test
+    void testMapKeysAreSubmittedForChoices(JenkinsRule j) {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("key", new Choice("ignored", "Label", true, false));
+        map.put("other", "Other");
+
+        List<Choice> choices = Choice.fromScriptResult(map);
+        assertEquals(Arrays.asList(new Choice("key", "Label", true, false), new Choice("other", "Other")), choices);
+        // both paths submit the same values
+        assertEquals(choices.stream().map(Choice::getValue).collect(Collectors.toList()),
+                new ArrayList<>(Choice.toSuffixedMap(map).keySet()));
+        assertEquals("Label:selected", Choice.toSuffixedMap(map).get("key"));
+    }
+
+    @Test
+    void testSandboxedScriptReturningChoices(JenkinsRule j) throws Descriptor.FormException {
+        String text = "return [new org.biouno.unochoice.Choice('a', 'A', false, true), "
+                + "new org.biouno.unochoice.Choice('b', '<b>B</b><script>alert(1)</script>', true, false), "
+                + "'c:selected']";
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(text, true, null), null);
+        CascadeChoiceParameter param = new CascadeChoiceParameter("param000", "description", "some-random-name",
+                script, CascadeChoiceParameter.PARAMETER_TYPE_MULTI_SELECT, "", false, 0);
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("A", "<b>B</b>", "c"),
+                Arrays.asList("a", "b", "c"),
+                Arrays.asList(1, 2),
+                Arrays.asList(0)), param.evaluateChoicesForUI(""));
+        assertEquals("b,c", ((StringParameterValue) param.getDefaultParameterValue()).getValue());
+        // the legacy map has the suffixes
+        assertEquals("<b>B</b>:selected", param.getChoices().get("b"));
+    }
+}
@@ -26,8 +26,12 @@ package org.biouno.unochoice;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Map;
+
 import hudson.model.Descriptor;
+import hudson.model.StringParameterValue;
 import org.biouno.unochoice.model.GroovyScript;
+import org.biouno.unochoice.util.DefaultValueCache;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
 import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
 import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
@@ -41,11 +45,13 @@ class TestChoiceParameter {
 
     private static final String SCRIPT = "return ['a', 'b']";
     private static final String FALLBACK_SCRIPT = "return ['EMPTY!']";
+    private static final String NON_DETERMINISTIC_SCRIPT = "return [System.nanoTime().toString()]";
 
     @BeforeEach
     void setUp(JenkinsRule j) {
         ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
         ScriptApproval.get().preapprove(FALLBACK_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(NON_DETERMINISTIC_SCRIPT, GroovyLanguage.get());
     }
 
     @Test
@@ -79,4 +85,69 @@ class TestChoiceParameter {
         assertFalse(param.getFilterable());
         assertEquals(Integer.valueOf(5), param.getFilterLength());
     }
+
+    @Test
+    void testCachedResults() throws Descriptor.FormException {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(NON_DETERMINISTIC_SCRIPT, Boolean.FALSE, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "cached-random-name", script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+
+        // not cached by default
+        assertFalse(param.isCacheEnabled());
+        assertNotEquals(param.getChoices(), param.getChoices());
+
+        param.setCacheTtl(60);
+        assertTrue(param.isCacheEnabled());
+        Map<Object, Object> first = param.getChoices();
+        assertEquals(first, param.getChoices());
+
+        // different referenced values are cached separately
+        assertNotEquals(first, param.getChoices(Map.of("other", "value")));
+
+        // refresh discards the cached results
+        param.refreshChoices();
+        assertNotEquals(first, param.getChoices());
+    }
+
+    @Test
+    void testDefaultValueStrategy() throws Exception {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(NON_DETERMINISTIC_SCRIPT, Boolean.FALSE, null),
+                null);
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "random-default-value", script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+        assertEquals(AbstractScriptableParameter.DEFAULT_VALUE_EVALUATE, param.getDefaultValueStrategy());
+        assertNotEquals(defaultValue(param), defaultValue(param));
+
+        param.setDefaultValueStrategy(AbstractScriptableParameter.DEFAULT_VALUE_STATIC);
+        param.setStaticDefaultValue("static");
+        assertEquals("static", defaultValue(param));
+
+        int refreshInterval = DefaultValueCache.REFRESH_INTERVAL;
+        try {
+            param.setDefaultValueStrategy(AbstractScriptableParameter.DEFAULT_VALUE_LAST_KNOWN);
+            String first = defaultValue(param);
+            assertEquals(first, defaultValue(param));
+
+            // a stale value is still returned, and evaluated again in the background
+            DefaultValueCache.REFRESH_INTERVAL = 0;
+            assertEquals(first, defaultValue(param));
+            DefaultValueCache.REFRESH_INTERVAL = 60;
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (first.equals(defaultValue(param)) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertNotEquals(first, defaultValue(param));
+        } finally {
+            DefaultValueCache.REFRESH_INTERVAL = refreshInterval;
+            DefaultValueCache.clear();
+        }
+
+        param.setDefaultValueStrategy("unknown");
+        assertEquals(AbstractScriptableParameter.DEFAULT_VALUE_EVALUATE, param.getDefaultValueStrategy());
+    }
+
+    private static String defaultValue(ChoiceParameter param) {
+        return ((StringParameterValue) param.getDefaultParameterValue()).getValue();
+    }
 }
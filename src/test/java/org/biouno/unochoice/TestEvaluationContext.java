@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+
+@WithJenkins
+class TestEvaluationContext {
+
+    @Test
+    void testValuesAreResolvedOncePerContext(JenkinsRule j) throws Exception {
+        j.jenkins.getGlobalNodeProperties().add(
+                new EnvironmentVariablesNodeProperty(new EnvironmentVariablesNodeProperty.Entry("KEY", "value")));
+        FreeStyleProject project = j.createFreeStyleProject();
+        AtomicInteger lookups = new AtomicInteger();
+
+        EvaluationContext context = EvaluationContext.create();
+        try (EvaluationContext.Scope scope = context.enter()) {
+            assertSame(context, EvaluationContext.current());
+            for (int i = 0; i < 3; i++) {
+                Job<?, ?> found = EvaluationContext.current().getProject("project:" + project.getFullName(), () -> {
+                    lookups.incrementAndGet();
+                    return project;
+                });
+                assertSame(project, found);
+            }
+            assertNull(context.getProject("project:missing", () -> {
+                lookups.incrementAndGet();
+                return null;
+            }));
+            assertNull(context.getProject("project:missing", () -> {
+                lookups.incrementAndGet();
+                return null;
+            }));
+            assertNull(context.getLastBuildWithArtifacts(project));
+
+            Map<String, Object> properties = context.getGlobalNodeProperties();
+            assertEquals("value", properties.get("KEY"));
+            assertSame(properties, context.getGlobalNodeProperties());
+            assertThrows(UnsupportedOperationException.class, () -> properties.put("KEY", "other"));
+        }
+        assertEquals(2, lookups.get());
+
+        // outside of a request or scope, nothing is memoized
+        EvaluationContext none = EvaluationContext.current();
+        assertNotSame(context, none);
+        none.getProject("project:" + project.getFullName(), () -> {
+            lookups.incrementAndGet();
+            return project;
+        });
+        none.getProject("project:" + project.getFullName(), () -> {
+            lookups.incrementAndGet();
+            return project;
+        });
+        assertEquals(4, lookups.get());
+    }
+
+    @Test
+    void testScopeRestoresPreviousContext(JenkinsRule j) {
+        EvaluationContext outer = EvaluationContext.create();
+        EvaluationContext inner = EvaluationContext.create();
+        try (EvaluationContext.Scope outerScope = outer.enter()) {
+            try (EvaluationContext.Scope innerScope = inner.enter()) {
+                assertSame(inner, EvaluationContext.current());
+            }
+            assertSame(outer, EvaluationContext.current());
+        }
+        assertNotSame(outer, EvaluationContext.current());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.biouno.unochoice.model.GroovyScript;
+import org.htmlunit.html.HtmlPage;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+
+@WithJenkins
+class TestParameterPreEvaluator {
+
+    private static final String SLOW_SCRIPT = "sleep(2000); return ['first:' + Thread.currentThread().getName()]";
+    private static final String SCRIPT = "return ['other:' + Thread.currentThread().getName()]";
+
+    @AfterEach
+    void tearDown() {
+        ParameterPreEvaluator.ENABLED = false;
+    }
+
+    private static ChoiceParameter parameter(String name, String text) throws Exception {
+        ScriptApproval.get().preapprove(text, GroovyLanguage.get());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(text, false, null), null);
+        return new ChoiceParameter(name, "", "random-" + name, script,
+                ChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 0);
+    }
+
+    @Test
+    void testParametersAreEvaluatedInParallel(JenkinsRule j) throws Exception {
+        ParameterPreEvaluator.ENABLED = true;
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(parameter("A", SLOW_SCRIPT), parameter("B", SCRIPT),
+                parameter("C", SCRIPT)));
+
+        HtmlPage page = j.createWebClient().goTo("job/" + project.getName() + "/build?delay=0sec");
+        String xml = page.asXml();
+        // the first parameter is evaluated by the request, the others while it waits
+        assertFalse(xml.contains("first:Active Choices parameter pre-evaluation"), xml);
+        assertTrue(xml.contains("other:Active Choices parameter pre-evaluation"), xml);
+        assertFalse(xml.contains("other:Handling GET"), xml);
+    }
+
+    @Test
+    void testWorkersUseTheJobOfTheRequest(JenkinsRule j) throws Exception {
+        ParameterPreEvaluator.ENABLED = true;
+        String script = "return [jenkinsProject.fullName + ':' + Thread.currentThread().getName()]";
+        FreeStyleProject original = j.createFreeStyleProject("original");
+        original.addProperty(new ParametersDefinitionProperty(parameter("A", SLOW_SCRIPT), parameter("B", script)));
+        // a copied job has parameters with the same random names
+        FreeStyleProject copy = j.createFreeStyleProject("copy");
+        copy.addProperty(new ParametersDefinitionProperty(parameter("A", SLOW_SCRIPT), parameter("B", script)));
+
+        HtmlPage page = j.createWebClient().goTo("job/copy/build?delay=0sec");
+        String xml = page.asXml();
+        assertTrue(xml.contains("copy:Active Choices parameter pre-evaluation"), xml);
+        assertFalse(xml.contains("original:"), xml);
+    }
+
+    @Test
+    void testOnlyParametersRenderedInlineArePreEvaluated(JenkinsRule j) throws Exception {
+        ParameterPreEvaluator.ENABLED = true;
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        CascadeChoiceParameter cascade = new CascadeChoiceParameter("C", "", "random-C",
+                new GroovyScript(new SecureGroovyScript(SCRIPT, false, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "A", false, 0);
+        ChoiceParameter lazy = parameter("D", SCRIPT);
+        lazy.setPageSize(10);
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(parameter("A", SLOW_SCRIPT), cascade, lazy));
+
+        HtmlPage page = j.createWebClient().goTo("job/" + project.getName() + "/build?delay=0sec");
+        assertFalse(page.asXml().contains("other:Active Choices parameter pre-evaluation"), page.asXml());
+    }
+
+    @Test
+    void testSlowPreEvaluationIsNotAwaited(JenkinsRule j) throws Exception {
+        ParameterPreEvaluator.ENABLED = true;
+        ParameterPreEvaluator.WAIT_TIMEOUT = 100;
+        try {
+            FreeStyleProject project = j.createFreeStyleProject();
+            project.addProperty(new ParametersDefinitionProperty(parameter("A", SCRIPT),
+                    parameter("B", SLOW_SCRIPT)));
+
+            HtmlPage page = j.createWebClient().goTo("job/" + project.getName() + "/build?delay=0sec");
+            // the request evaluated the slow script itself instead of waiting for the worker
+            assertTrue(page.asXml().contains("first:Handling GET"), page.asXml());
+        } finally {
+            ParameterPreEvaluator.WAIT_TIMEOUT = 10000L;
+        }
+    }
+
+    @Test
+    void testDisabledByDefault(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(parameter("B", SCRIPT), parameter("C", SCRIPT)));
+
+        HtmlPage page = j.createWebClient().goTo("job/" + project.getName() + "/build?delay=0sec");
+        assertFalse(page.asXml().contains("other:Active Choices parameter pre-evaluation"));
+    }
+}
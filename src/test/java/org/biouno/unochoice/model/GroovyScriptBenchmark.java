@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+
+/**
+ * Benchmarks the evaluation of {@link GroovyScript}s, with and without the sandbox, and the sanitization of the
+ * values returned by sandboxed scripts.
+ */
+public class GroovyScriptBenchmark {
+
+    private static final String SCRIPT = "return ['main:selected', 'develop', 'release/1.0', 'release/1.1', "
+            + "'release/2.0', 'feature/login', 'feature/search', 'hotfix/1.0.1', 'hotfix/1.1.1', 'legacy:disabled']";
+
+    @State(Scope.Benchmark)
+    public static class JenkinsState extends JmhBenchmarkState {
+
+        GroovyScript sandboxed;
+        GroovyScript notSandboxed;
+
+        @Override
+        public void setup() throws Exception {
+            ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+            sandboxed = new GroovyScript(new SecureGroovyScript(SCRIPT, true, null), null);
+            notSandboxed = new GroovyScript(new SecureGroovyScript(SCRIPT, false, null), null);
+        }
+    }
+
+    /**
+     * Values returned by a script, to sanitize.
+     */
+    @State(Scope.Benchmark)
+    public static class ReturnValues {
+
+        @Param({"10", "1000", "20000"})
+        public int size;
+
+        /**
+         * {@link GroovyScript#PARALLEL_SANITIZATION_THRESHOLD}, {@code 0} to sanitize on the benchmark thread.
+         */
+        @Param({"0", "10000"})
+        public int parallelSanitizationThreshold;
+
+        List<Object> list;
+        Map<Object, Object> map;
+
+        @Setup
+        public void setUp() {
+            GroovyScript.PARALLEL_SANITIZATION_THRESHOLD = parallelSanitizationThreshold;
+            list = new ArrayList<>(size);
+            map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                String value = i % 10 == 0 ? "<b>value " + i + "</b>:selected" : "value " + i;
+                list.add(value);
+                map.put("key" + i, value);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object evalSandboxed(JenkinsState state) {
+        return state.sandboxed.eval();
+    }
+
+    @Benchmark
+    public Object evalNotSandboxed(JenkinsState state) {
+        return state.notSandboxed.eval();
+    }
+
+    @Benchmark
+    public Object sanitizeList(JenkinsState state, ReturnValues values) {
+        return state.sandboxed.resolveTypeAndSanitize(values.list);
+    }
+
+    @Benchmark
+    public Object sanitizeMap(JenkinsState state, ReturnValues values) {
+        return state.sandboxed.resolveTypeAndSanitize(values.map);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.biouno.unochoice.util.Utils;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Test the {@link GroovyScript} bindings and sanitization.
+ */
+@WithJenkins
+class TestGroovyScript {
+
+    private static final String SCRIPT = "return [value]";
+
+    @Test
+    void testEnvironmentInterpolation(JenkinsRule j) {
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        Map.Entry<String, String> variable = Utils.getSystemEnv().entrySet().iterator().next();
+        Map<String, String> parameters = Map.of("value", "${" + variable.getKey() + "}");
+
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(SCRIPT, false, null), null);
+        assertEquals(List.of(variable.getValue()), script.eval(parameters));
+        assertEquals(List.of("no variable"), script.eval(Map.of("value", "no variable")));
+
+        script.setDisableEnvironmentInterpolation(true);
+        assertEquals(List.of("${" + variable.getKey() + "}"), script.eval(parameters));
+    }
+
+    @Test
+    void testBindingDoesNotModifyParameters(JenkinsRule j) {
+        String text = "value = 'changed'; return [value, binding.hasVariable('missing')]";
+        ScriptApproval.get().preapprove(text, GroovyLanguage.get());
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("value", "original");
+        parameters.put("missing", null);
+
+        // variables set by the script stay in its binding, and parameters without value are not bound
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(text, false, null), null);
+        assertEquals(List.of("changed", false), script.eval(parameters));
+        assertEquals("original", parameters.get("value"));
+    }
+
+    @Test
+    void testSystemEnvIsImmutable(JenkinsRule j) {
+        assertSame(Utils.getSystemEnv(), Utils.getSystemEnv());
+        assertEquals(System.getenv(), Utils.getSystemEnv());
+        assertThrows(UnsupportedOperationException.class, () -> Utils.getSystemEnv().put("KEY", "value"));
+    }
+
+    @Test
+    void testParallelSanitizationKeepsOrder(JenkinsRule j) {
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(SCRIPT, true, null), null);
+        List<Object> list = new ArrayList<>();
+        Map<Object, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String value = i % 7 == 0 ? "<b>value " + i + "</b><script>alert(" + i + ")</script>" : "value " + i;
+            list.add(value);
+            map.put("key" + (4999 - i), value);
+        }
+        int threshold = GroovyScript.PARALLEL_SANITIZATION_THRESHOLD;
+        try {
+            GroovyScript.PARALLEL_SANITIZATION_THRESHOLD = 0;
+            Object sequentialList = script.resolveTypeAndSanitize(list);
+            Map<?, ?> sequentialMap = (Map<?, ?>) script.resolveTypeAndSanitize(map);
+
+            GroovyScript.PARALLEL_SANITIZATION_THRESHOLD = 100;
+            assertEquals(sequentialList, script.resolveTypeAndSanitize(list));
+            Map<?, ?> parallelMap = (Map<?, ?>) script.resolveTypeAndSanitize(map);
+            assertEquals(new ArrayList<>(sequentialMap.entrySet()), new ArrayList<>(parallelMap.entrySet()));
+            assertEquals("value 1", parallelMap.get("key4998"));
+            assertEquals("<b>value 0</b>", parallelMap.get("key4999"));
+        } finally {
+            GroovyScript.PARALLEL_SANITIZATION_THRESHOLD = threshold;
+        }
+    }
+}
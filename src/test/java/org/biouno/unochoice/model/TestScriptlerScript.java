@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.fileupload2.core.FileItem;
+import org.apache.commons.io.FileUtils;
+import org.jenkinsci.plugins.scriptler.ScriptlerHelper;
+import org.jenkinsci.plugins.scriptler.ScriptlerManagement;
+import org.jenkinsci.plugins.scriptler.builder.ScriptlerBuilder;
+import org.jenkinsci.plugins.scriptler.config.Script;
+import org.jenkinsci.plugins.scriptler.config.ScriptlerConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import hudson.model.FileParameterValue;
+
+/**
+ * Test the conversion of {@link ScriptlerScript} to {@link GroovyScript}.
+ */
+@WithJenkins
+class TestScriptlerScript {
+
+    private static final long REVALIDATE_MILLIS = ScriptlerScript.REVALIDATE_MILLIS;
+
+    @AfterEach
+    void tearDown() {
+        ScriptlerScript.REVALIDATE_MILLIS = REVALIDATE_MILLIS;
+        ScriptlerScript.clearConvertedScripts();
+    }
+
+    private static void saveScript(JenkinsRule j, String text) throws Exception {
+        final ScriptlerManagement scriptler = j.getInstance().getExtensionList(ScriptlerManagement.class).get(0);
+        final File scriptFile = Files.createTempFile("uno-choice", "converted").toFile();
+        FileUtils.writeStringToFile(scriptFile, text, StandardCharsets.UTF_8, false);
+        final FileItem<?> fi = new FileParameterValue.FileItemImpl2(scriptFile);
+        new ScriptlerHelper(scriptler).saveScript(fi, true, "converted");
+    }
+
+    @Test
+    void testConvertedScriptIsSharedUntilTheScriptChanges(JenkinsRule j) throws Exception {
+        saveScript(j, "return 'first'");
+        Script script = new Script("converted.groovy", "converted.groovy", "A comment.", false,
+                Collections.emptyList(), false);
+        ScriptlerConfiguration.getConfiguration().addOrReplace(script);
+        ScriptlerScript scriptlerScript = new ScriptlerScript(
+                new ScriptlerBuilder("", script.getId(), false, List.of()), Boolean.TRUE);
+
+        GroovyScript first = scriptlerScript.toGroovyScript();
+        assertSame(first, scriptlerScript.toGroovyScript());
+        assertEquals("return 'first'", first.getScript().getScript());
+
+        // the file is read again once the conversion is older than the revalidation period
+        ScriptlerScript.REVALIDATE_MILLIS = 0;
+        assertSame(first, scriptlerScript.toGroovyScript());
+        saveScript(j, "return 'second'");
+        GroovyScript second = scriptlerScript.toGroovyScript();
+        assertNotSame(first, second);
+        assertEquals("return 'second'", second.getScript().getScript());
+
+        // other options get their own conversion
+        ScriptlerScript notSandboxed = new ScriptlerScript(
+                new ScriptlerBuilder("", script.getId(), false, List.of()), Boolean.FALSE);
+        assertNotSame(second, notSandboxed.toGroovyScript());
+
+        ScriptlerScript.clearConvertedScripts();
+        ScriptlerScript.REVALIDATE_MILLIS = REVALIDATE_MILLIS;
+        assertNotSame(second, scriptlerScript.toGroovyScript());
+    }
+}
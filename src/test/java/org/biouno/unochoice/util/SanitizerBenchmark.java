@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares sanitizing the values returned by a sandboxed script one at a time with
+ * {@link SafeHtmlExtendedMarkupFormatter#translate(String)}, as done before 2.8.9, with a
+ * {@link SafeHtmlExtendedMarkupFormatter.Sanitizer}.
+ */
+@State(Scope.Benchmark)
+public class SanitizerBenchmark {
+
+    @Param({"1000", "20000"})
+    public int size;
+
+    /**
+     * Percentage of the values containing HTML.
+     */
+    @Param({"0", "10"})
+    public int htmlPercentage;
+
+    private List<String> values;
+
+    @Setup
+    public void setUp() {
+        values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(i % 100 < htmlPercentage ? "<b>release " + i + "</b>" : "1.2." + i);
+        }
+    }
+
+    @Benchmark
+    public List<String> translate() throws IOException {
+        List<String> sanitized = new ArrayList<>(values.size());
+        for (String value : values) {
+            sanitized.add(SafeHtmlExtendedMarkupFormatter.INSTANCE.translate(value));
+        }
+        return sanitized;
+    }
+
+    @Benchmark
+    public List<String> sanitizer() {
+        SafeHtmlExtendedMarkupFormatter.Sanitizer sanitizer = SafeHtmlExtendedMarkupFormatter.newSanitizer();
+        List<String> sanitized = new ArrayList<>(values.size());
+        for (String value : values) {
+            sanitized.add(sanitizer.sanitize(value));
+        }
+        return sanitized;
+    }
+}
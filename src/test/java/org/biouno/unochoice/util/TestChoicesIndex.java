@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link ChoicesIndex}.
+ */
+class TestChoicesIndex {
+
+    private static final String[] TEXTS = {"release-1.0", "Master", "feature/release-notes", "develop", "RELEASE-2.0", "hotfix"};
+
+    @Test
+    void testChoicesStartingWithTheFilterComeFirst() {
+        ChoicesIndex index = new ChoicesIndex(TEXTS);
+        assertArrayEquals(new int[] {0, 4, 2}, index.find("release"));
+        assertArrayEquals(new int[] {0, 4, 2}, index.find("ReLeAsE"));
+    }
+
+    @Test
+    void testShortFilters() {
+        ChoicesIndex index = new ChoicesIndex(TEXTS);
+        assertArrayEquals(new int[] {0, 1, 2, 4}, index.find("as"));
+        assertArrayEquals(new int[] {0, 4, 2}, index.find("re"));
+        assertArrayEquals(new int[] {3}, index.find("d"));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5}, index.find(""));
+    }
+
+    @Test
+    void testNoMatches() {
+        ChoicesIndex index = new ChoicesIndex(TEXTS);
+        assertEquals(0, index.find("unknown").length);
+        assertEquals(0, index.find("z").length);
+    }
+
+    @Test
+    void testRepeatedTrigrams() {
+        ChoicesIndex index = new ChoicesIndex(new String[] {"aaaa", "baaa", "aab"});
+        assertArrayEquals(new int[] {0, 1}, index.find("aaa"));
+    }
+}
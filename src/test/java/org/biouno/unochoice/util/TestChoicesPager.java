@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.biouno.unochoice.Choice;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Test the {@link ChoicesPager}.
+ */
+@WithJenkins
+class TestChoicesPager {
+
+    @AfterEach
+    void tearDown() {
+        ChoicesPager.clear();
+    }
+
+    private static Supplier<List<Choice>> choices(AtomicInteger evaluations) {
+        return () -> {
+            evaluations.incrementAndGet();
+            List<Choice> choices = new ArrayList<>();
+            for (int i = 0; i < 250; i++) {
+                choices.add(new Choice("key" + i, "value" + i, i == 120, i == 121));
+            }
+            return choices;
+        };
+    }
+
+    @Test
+    void testPages(JenkinsRule j) {
+        AtomicInteger evaluations = new AtomicInteger();
+        JSONObject first = ChoicesPager.page(null, choices(evaluations), 0, 100, "");
+        assertEquals(250, first.getInt("total"));
+        assertEquals(0, first.getInt("offset"));
+        assertEquals(100, first.getJSONArray("values").size());
+        assertEquals("key0", first.getJSONArray("values").get(0));
+        assertEquals("value0", first.getJSONArray("labels").get(0));
+        assertEquals("key120", first.getString("selectedValue"));
+        assertTrue(first.getJSONArray("selected").isEmpty());
+
+        String cursor = first.getString("cursor");
+        JSONObject last = ChoicesPager.page(cursor, choices(evaluations), 200, 100, null);
+        assertEquals(cursor, last.getString("cursor"));
+        assertEquals(200, last.getInt("offset"));
+        assertEquals(50, last.getJSONArray("values").size());
+        assertEquals("value249", last.getJSONArray("labels").get(49));
+        assertFalse(last.has("selectedValue"));
+        assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    void testFilter(JenkinsRule j) {
+        AtomicInteger evaluations = new AtomicInteger();
+        String cursor = ChoicesPager.page(null, choices(evaluations), 0, 10, null).getString("cursor");
+        // labels are matched, and the flags are sent as indexes in the page
+        JSONObject page = ChoicesPager.page(cursor, choices(evaluations), 0, 10, "VALUE12");
+        assertEquals(11, page.getInt("total"));
+        assertEquals(List.of("key12", "key120", "key121", "key122", "key123", "key124", "key125", "key126",
+                "key127", "key128"), page.getJSONArray("values"));
+        assertEquals(List.of(1), page.getJSONArray("selected"));
+        assertEquals(List.of(2), page.getJSONArray("disabled"));
+        page = ChoicesPager.page(cursor, choices(evaluations), 10, 10, "VALUE12");
+        assertEquals(List.of("key129"), page.getJSONArray("values"));
+        assertEquals(0, ChoicesPager.page(cursor, choices(evaluations), 0, 10, "key").getInt("total"));
+        assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    void testUnknownOrExpiredCursorEvaluatesAgain(JenkinsRule j) {
+        AtomicInteger evaluations = new AtomicInteger();
+        JSONObject page = ChoicesPager.page("unknown", choices(evaluations), 0, 10, null);
+        assertNotEquals("unknown", page.getString("cursor"));
+        assertEquals(1, evaluations.get());
+
+        int ttl = ChoicesPager.TTL_SECONDS;
+        ChoicesPager.TTL_SECONDS = -1;
+        try {
+            ChoicesPager.page(page.getString("cursor"), choices(evaluations), 0, 10, null);
+        } finally {
+            ChoicesPager.TTL_SECONDS = ttl;
+        }
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    void testPageSizeIsBounded(JenkinsRule j) {
+        Supplier<List<Choice>> many = () -> {
+            List<Choice> choices = new ArrayList<>();
+            for (int i = 0; i < ChoicesPager.MAX_PAGE_SIZE + 10; i++) {
+                choices.add(new Choice(String.valueOf(i)));
+            }
+            return choices;
+        };
+        JSONObject page = ChoicesPager.page(null, many, -5, Integer.MAX_VALUE, null);
+        assertEquals(0, page.getInt("offset"));
+        assertEquals(ChoicesPager.MAX_PAGE_SIZE, page.getJSONArray("values").size());
+    }
+}
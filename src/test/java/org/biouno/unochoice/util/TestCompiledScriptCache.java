@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.UnapprovedUsageException;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Test the {@link CompiledScriptCache}.
+ */
+@WithJenkins
+class TestCompiledScriptCache {
+
+    private static final String SCRIPT = "return [name, 'b']";
+
+    @BeforeEach
+    void setUp(JenkinsRule j) {
+        CompiledScriptCache.clear();
+    }
+
+    @Test
+    void testCompiledScriptIsReused(JenkinsRule j) throws Exception {
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(SCRIPT, Boolean.FALSE, null), null);
+
+        assertEquals(List.of("a", "b"), script.eval(Collections.singletonMap("name", "a")));
+        assertEquals(0, CompiledScriptCache.getHits());
+        assertEquals(1, CompiledScriptCache.getMisses());
+
+        // a warm evaluation must use the new binding, not the one from the first run
+        assertEquals(List.of("c", "b"), script.eval(Collections.singletonMap("name", "c")));
+        assertEquals(1, CompiledScriptCache.getHits());
+        assertEquals(1, CompiledScriptCache.getMisses());
+        assertEquals(1, CompiledScriptCache.size());
+    }
+
+    @Test
+    void testSandboxFlagIsPartOfTheKey(JenkinsRule j) throws Exception {
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        new GroovyScript(new SecureGroovyScript(SCRIPT, Boolean.FALSE, null), null)
+                .eval(Collections.singletonMap("name", "a"));
+        new GroovyScript(new SecureGroovyScript(SCRIPT, Boolean.TRUE, null), null)
+                .eval(Collections.singletonMap("name", "a"));
+
+        assertEquals(0, CompiledScriptCache.getHits());
+        assertEquals(2, CompiledScriptCache.getMisses());
+    }
+
+    @Test
+    void testFieldsAreNotKeptBetweenEvaluations(JenkinsRule j) throws Exception {
+        final String text = "import groovy.transform.Field\n@Field List seen = []\nseen << name\nreturn seen";
+        ScriptApproval.get().preapprove(text, GroovyLanguage.get());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(text, Boolean.FALSE, null), null);
+
+        assertEquals(List.of("a"), script.eval(Collections.singletonMap("name", "a")));
+        assertEquals(List.of("c"), script.eval(Collections.singletonMap("name", "c")));
+        assertEquals(1, CompiledScriptCache.getHits());
+    }
+
+    @Test
+    void testStaticFieldsAreNotShared(JenkinsRule j) throws Exception {
+        final String text = "import groovy.transform.Field\n@Field static List seen = []\nseen << name\nreturn seen";
+        ScriptApproval.get().preapprove(text, GroovyLanguage.get());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(text, Boolean.FALSE, null), null);
+
+        assertEquals(List.of("a"), script.eval(Collections.singletonMap("name", "a")));
+        // compiled again on every evaluation, so the static field starts empty
+        assertEquals(List.of("c"), script.eval(Collections.singletonMap("name", "c")));
+    }
+
+    @Test
+    void testRevokedApprovalIsHonouredOnCacheHit(JenkinsRule j) throws Exception {
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(SCRIPT, Boolean.FALSE, null), null);
+        script.eval(Collections.singletonMap("name", "a"));
+
+        ScriptApproval.get().clearApprovedScripts();
+
+        RuntimeException re = assertThrows(RuntimeException.class,
+                () -> script.eval(Collections.singletonMap("name", "a")));
+        assertInstanceOf(UnapprovedUsageException.class, re.getCause());
+    }
+}
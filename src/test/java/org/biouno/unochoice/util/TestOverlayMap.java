@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link OverlayMap}.
+ */
+class TestOverlayMap {
+
+    private static Map<String, Object> base() {
+        Map<String, Object> base = new LinkedHashMap<>();
+        base.put("A", "1");
+        base.put("B", "2");
+        return base;
+    }
+
+    @Test
+    void testReadsFallThroughAndWritesStayInOverlay() {
+        Map<String, Object> base = base();
+        Map<Object, Object> map = new OverlayMap<>(base);
+        assertEquals("1", map.get("A"));
+        assertEquals(2, map.size());
+
+        assertEquals("1", map.put("A", "one"));
+        assertNull(map.put("C", "3"));
+        assertEquals("one", map.get("A"));
+        assertEquals(3, map.size());
+        assertEquals("2", map.remove("B"));
+        assertFalse(map.containsKey("B"));
+        assertNull(map.get("B"));
+        assertEquals(2, map.size());
+
+        List<Object> keys = new ArrayList<>(map.keySet());
+        assertEquals(List.of("A", "C"), keys);
+        assertEquals(Map.of("A", "one", "C", "3"), map);
+
+        // the base map is left untouched
+        assertEquals(base(), base);
+    }
+
+    @Test
+    void testPutAfterRemoveAndClear() {
+        Map<Object, Object> map = new OverlayMap<>(base());
+        map.remove("A");
+        map.put("A", "again");
+        assertEquals("again", map.get("A"));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        map.put("B", "3");
+        assertEquals(Map.of("B", "3"), map);
+    }
+
+    @Test
+    void testSizeIsKeptOnWrites() {
+        Map<Object, Object> map = new OverlayMap<>(base());
+        map.put("A", "one");
+        map.put("A", "again");
+        map.remove("A");
+        map.remove("A");
+        map.remove("missing");
+        map.put("C", "3");
+        map.remove("C");
+        assertEquals(1, map.size());
+        assertEquals(Map.of("B", "2"), map);
+    }
+}
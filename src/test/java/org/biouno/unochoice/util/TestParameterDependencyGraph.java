@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.biouno.unochoice.AbstractCascadableParameter;
+import org.biouno.unochoice.CascadeChoiceParameter;
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import hudson.util.FormValidation;
+
+/**
+ * Test the {@link ParameterDependencyGraph}.
+ */
+@WithJenkins
+class TestParameterDependencyGraph {
+
+    private static CascadeChoiceParameter cascade(String name, String referencedParameters) throws Exception {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript("return ['a']", Boolean.TRUE, null), null);
+        return new CascadeChoiceParameter(name, "", "random-" + name, script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, referencedParameters, false, 0);
+    }
+
+    private static List<String> names(List<AbstractCascadableParameter> parameters) {
+        return parameters.stream().map(AbstractCascadableParameter::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    void testTopologicalOrder(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        // declared before the parameters they reference
+        project.addProperty(new ParametersDefinitionProperty(cascade("D", "B, C"), cascade("C", "B"),
+                cascade("B", "A"), new StringParameterDefinition("A", "a"), cascade("E", "E"), cascade("F", "Z")));
+        ParameterDependencyGraph graph = ParameterDependencyGraph.of(project);
+
+        assertEquals(List.of("B", "E", "F", "C", "D"), names(graph.getParameters()));
+        assertEquals(List.of("B", "C", "D"), names(graph.getDownstream("A")));
+        assertEquals(List.of("D"), names(graph.getDownstream("C")));
+        assertEquals(List.of("E"), names(graph.getDownstream("E")));
+        assertEquals(List.of(), names(graph.getDownstream("D")));
+        assertTrue(graph.getCyclicParameters().isEmpty());
+        assertSame(graph, ParameterDependencyGraph.of(project));
+    }
+
+    @Test
+    void testCycleIsDetected(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(cascade("A", "C"), cascade("B", "A"),
+                cascade("C", "B"), cascade("D", "C")));
+        ParameterDependencyGraph graph = ParameterDependencyGraph.of(project);
+
+        assertEquals(Set.of("A", "B", "C"), graph.getCyclicParameters());
+        assertEquals(List.of("A", "B", "C", "D"), names(graph.getParameters()));
+        assertEquals(List.of("A", "B", "C", "D"), names(graph.getDownstream("A")));
+
+        project.removeProperty(ParametersDefinitionProperty.class);
+        project.addProperty(new ParametersDefinitionProperty(cascade("A", "X"), cascade("B", "A")));
+        graph = ParameterDependencyGraph.of(project);
+        assertTrue(graph.getCyclicParameters().isEmpty());
+        assertEquals(List.of("B"), names(graph.getDownstream("A")));
+    }
+
+    @Test
+    void testSaveDropsTheGraph(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(cascade("A", "X")));
+        ParameterDependencyGraph graph = ParameterDependencyGraph.of(project);
+
+        project.save();
+        assertNotSame(graph, ParameterDependencyGraph.of(project));
+    }
+
+    @Test
+    void testCycleIsReportedByTheForm(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(cascade("A", "C"), cascade("B", "A"),
+                cascade("C", "X"), cascade("D", "E"), cascade("E", "D")));
+
+        assertEquals(Set.of("A", "B", "C"), ParameterDependencyGraph.findCycle(project, "C", "B"));
+        assertEquals(Set.of(), ParameterDependencyGraph.findCycle(project, "C", "X, D"));
+        // downstream of a cycle, but not in it
+        assertEquals(Set.of(), ParameterDependencyGraph.findCycle(project, "F", "D"));
+
+        CascadeChoiceParameter.DescriptImpl descriptor = j.jenkins.getDescriptorByType(
+                CascadeChoiceParameter.DescriptImpl.class);
+        assertEquals(FormValidation.Kind.WARNING,
+                descriptor.doCheckReferencedParameters(project, "C", "B").kind);
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckReferencedParameters(project, "C", "X").kind);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.biouno.unochoice.ChoiceParameter;
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+
+/**
+ * Test the {@link ParameterProjectIndex}.
+ */
+@WithJenkins
+class TestParameterProjectIndex {
+
+    @Test
+    void testIndexFollowsProjectLifecycle(JenkinsRule j) throws Exception {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript("return ['a']", Boolean.TRUE, null), null);
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "indexed-random-name", script,
+                ChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+        FreeStyleProject project = j.createFreeStyleProject("indexed");
+        project.addProperty(new ParametersDefinitionProperty(param));
+
+        assertEquals("indexed", ParameterProjectIndex.getProjectFullName("indexed-random-name"));
+        assertEquals(project, Utils.findProjectByParameterUUID("indexed-random-name"));
+
+        project.renameTo("renamed");
+        assertEquals("renamed", ParameterProjectIndex.getProjectFullName("indexed-random-name"));
+        assertEquals(project, Utils.findProjectByParameterUUID("indexed-random-name"));
+
+        project.delete();
+        assertNull(ParameterProjectIndex.getProjectFullName("indexed-random-name"));
+        assertNull(Utils.findProjectByParameterUUID("indexed-random-name"));
+    }
+
+    @Test
+    void testScanFallbackIndexesProjects(JenkinsRule j) throws Exception {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript("return ['a']", Boolean.TRUE, null), null);
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "scanned-random-name", script,
+                ChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+        FreeStyleProject project = j.createFreeStyleProject("scanned");
+        project.addProperty(new ParametersDefinitionProperty(param));
+        ParameterProjectIndex.clear();
+
+        assertEquals(project, Utils.findProjectByParameterUUID("scanned-random-name"));
+        assertEquals("scanned", ParameterProjectIndex.getProjectFullName("scanned-random-name"));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link SafeHtmlExtendedMarkupFormatter}.
+ */
+class TestSafeHtmlExtendedMarkupFormatter {
+
+    private static final String[] TEXTS = {
+        "",
+        "1.2.3",
+        "release/1.0",
+        "feature/JENKINS-12345_a b,c;d:e!f?g(h)[i]~j|k*l%m$n#o^p\\q",
+        "São Paulo",
+        "東京",
+        "A=1",
+        "a + b",
+        "user@example.com",
+        "it's \"quoted\"",
+        "{{constructor}}",
+        "`tick`",
+        "<b>bold</b>",
+        "<script>alert('xss')</script>",
+        "<img src=x onerror=alert(1)>",
+        "<input type=\"text\" name=\"value\" value=\"1\">",
+        "<div><span>unclosed",
+        "a & b < c > d",
+        "tab\tand\nnew line",
+        "non breaking",
+        "after unclosed"
+    };
+
+    @Test
+    void testPlainText() {
+        assertTrue(SafeHtmlExtendedMarkupFormatter.isPlainText("1.2.3"));
+        assertTrue(SafeHtmlExtendedMarkupFormatter.isPlainText("São Paulo"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("<b>"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("a & b"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("A=1"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("new\nline"));
+    }
+
+    @Test
+    void testSanitizerMatchesTranslate() throws IOException {
+        SafeHtmlExtendedMarkupFormatter.Sanitizer sanitizer = SafeHtmlExtendedMarkupFormatter.newSanitizer();
+        for (String text : TEXTS) {
+            String expected = SafeHtmlExtendedMarkupFormatter.INSTANCE.translate(text);
+            // plain text must be returned unchanged by the sanitizer too
+            if (SafeHtmlExtendedMarkupFormatter.isPlainText(text)) {
+                assertEquals(text, expected, text);
+            }
+            assertEquals(expected, sanitizer.sanitize(text), text);
+        }
+        assertNull(sanitizer.sanitize(null));
+    }
+}
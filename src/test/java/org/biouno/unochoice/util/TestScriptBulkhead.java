@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import hudson.model.FreeStyleProject;
+
+/**
+ * Test the {@link ScriptBulkhead}.
+ */
+@WithJenkins
+class TestScriptBulkhead {
+
+    private static final String SCRIPT = "return ['script']";
+    private static final String FALLBACK_SCRIPT = "return ['fallback']";
+
+    @BeforeEach
+    void setUp(JenkinsRule j) {
+        ScriptBulkhead.MAX_WAIT_MILLIS = 100;
+    }
+
+    @AfterEach
+    void tearDown() {
+        ScriptBulkhead.setLimits(0, 0);
+        ScriptBulkhead.MAX_WAIT_MILLIS = 5000;
+        ScriptBulkhead.MAX_WAITING = 100;
+    }
+
+    @Test
+    void testGlobalLimit() {
+        ScriptBulkhead.setLimits(1, 0);
+        long rejections = ScriptBulkhead.getRejections();
+        long waited = ScriptBulkhead.getWaitCount();
+        try (ScriptBulkhead.Permit ignored = ScriptBulkhead.acquire("a")) {
+            assertThrows(ScriptBulkhead.RejectedException.class, () -> ScriptBulkhead.acquire("b"));
+        }
+        assertEquals(rejections + 1, ScriptBulkhead.getRejections());
+        assertEquals(waited + 1, ScriptBulkhead.getWaitCount());
+        assertEquals(0, ScriptBulkhead.getQueueDepth());
+        // the turn was given back
+        ScriptBulkhead.acquire("b").close();
+    }
+
+    @Test
+    void testPerJobLimit() {
+        ScriptBulkhead.setLimits(0, 1);
+        try (ScriptBulkhead.Permit ignored = ScriptBulkhead.acquire("a")) {
+            ScriptBulkhead.acquire("b").close();
+            ScriptBulkhead.acquire(null).close();
+            assertThrows(ScriptBulkhead.RejectedException.class, () -> ScriptBulkhead.acquire("a"));
+        }
+    }
+
+    @Test
+    void testTurnsOfDeletedAndRenamedJobsAreDropped(JenkinsRule j) throws Exception {
+        ScriptBulkhead.setLimits(0, 1);
+        FreeStyleProject deleted = j.createFreeStyleProject("deleted");
+        FreeStyleProject renamed = j.createFreeStyleProject("renamed");
+        ScriptBulkhead.acquire(deleted.getFullName()).close();
+        ScriptBulkhead.acquire(renamed.getFullName()).close();
+        assertEquals(2, ScriptBulkhead.getJobCount());
+
+        deleted.delete();
+        assertEquals(1, ScriptBulkhead.getJobCount());
+        renamed.renameTo("other");
+        assertEquals(0, ScriptBulkhead.getJobCount());
+    }
+
+    @Test
+    void testFullQueueRejectsRightAway() {
+        ScriptBulkhead.setLimits(1, 0);
+        ScriptBulkhead.MAX_WAITING = 0;
+        ScriptBulkhead.MAX_WAIT_MILLIS = 60000;
+        long waited = ScriptBulkhead.getWaitCount();
+        try (ScriptBulkhead.Permit ignored = ScriptBulkhead.acquire("a")) {
+            assertThrows(ScriptBulkhead.RejectedException.class, () -> ScriptBulkhead.acquire("a"));
+        }
+        assertEquals(waited, ScriptBulkhead.getWaitCount());
+    }
+
+    @Test
+    void testRejectedScriptUsesFallback() throws Exception {
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(FALLBACK_SCRIPT, GroovyLanguage.get());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(SCRIPT, false, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, false, null));
+        ScriptCallback<Exception> callback = new ScriptCallback<>("param", script, new HashMap<>(), "job");
+
+        ScriptBulkhead.setLimits(1, 0);
+        assertEquals(Collections.singletonList("script"), callback.call());
+        try (ScriptBulkhead.Permit ignored = ScriptBulkhead.acquire("other")) {
+            assertEquals(Collections.singletonList("fallback"), callback.call());
+        }
+    }
+}
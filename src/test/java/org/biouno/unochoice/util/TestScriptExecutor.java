@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Test the {@link ScriptExecutor} and the timeout of {@link GroovyScript}.
+ */
+@WithJenkins
+class TestScriptExecutor {
+
+    private static final String SLOW_SCRIPT = "Thread.sleep(30000); return ['slow']";
+    private static final String FALLBACK_SCRIPT = "return ['fallback']";
+
+    @AfterEach
+    void tearDown() {
+        ScriptExecutor.DEFAULT_TIMEOUT = 0;
+    }
+
+    private static GroovyScript script() throws Exception {
+        ScriptApproval.get().preapprove(SLOW_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(FALLBACK_SCRIPT, GroovyLanguage.get());
+        return new GroovyScript(new SecureGroovyScript(SLOW_SCRIPT, false, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, false, null));
+    }
+
+    @Test
+    void testTimeoutFallsBack(JenkinsRule j) throws Exception {
+        GroovyScript script = script();
+        script.setTimeout(1);
+        long timeouts = ScriptExecutor.getTimeouts();
+        long start = System.nanoTime();
+
+        assertEquals(Collections.singletonList("fallback"), script.eval());
+        assertTrue(System.nanoTime() - start < 20_000_000_000L);
+        assertEquals(timeouts + 1, ScriptExecutor.getTimeouts());
+    }
+
+    @Test
+    void testDefaultTimeout(JenkinsRule j) throws Exception {
+        GroovyScript script = script();
+        assertNull(script.getTimeout());
+        ScriptExecutor.DEFAULT_TIMEOUT = 1;
+
+        assertEquals(Collections.singletonList("fallback"), script.eval());
+    }
+
+    @Test
+    void testNoTimeoutRunsOnCallingThread(JenkinsRule j) throws Exception {
+        assertSame(Thread.currentThread(), ScriptExecutor.call("test", Thread::currentThread, 0));
+        assertNotSame(Thread.currentThread(), ScriptExecutor.call("test", Thread::currentThread, 5));
+    }
+
+    @Test
+    void testRejectsWhenAllThreadsAreBusy(JenkinsRule j) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newCachedThreadPool();
+        try {
+            // scripts ignoring interruption keep their thread after timing out
+            for (int i = 0; i < 32; i++) {
+                callers.submit(() -> ScriptExecutor.call("test", () -> {
+                    while (true) {
+                        try {
+                            release.await();
+                            return null;
+                        } catch (InterruptedException ignored) {
+                            // keep running
+                        }
+                    }
+                }, 1));
+            }
+            for (int i = 0; i < 100 && ScriptExecutor.getRunning() < 32; i++) {
+                Thread.sleep(100);
+            }
+            long rejections = ScriptExecutor.getRejections();
+
+            assertThrows(RejectedExecutionException.class, () -> ScriptExecutor.call("test", () -> "ran", 5));
+            assertEquals(rejections + 1, ScriptExecutor.getRejections());
+        } finally {
+            release.countDown();
+            callers.shutdown();
+        }
+    }
+}
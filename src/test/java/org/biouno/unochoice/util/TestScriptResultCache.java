@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link ScriptResultCache}.
+ */
+class TestScriptResultCache {
+
+    private static final Object SCRIPT = new Object();
+
+    @AfterEach
+    void tearDown() {
+        ScriptResultCache.clear();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCallersDoNotShareTheCachedMap() {
+        Map<Object, Object> result = new LinkedHashMap<>();
+        result.put("a", "A");
+        ScriptResultCache.put("random", SCRIPT, Collections.emptyMap(), result, 60);
+        // changing the stored result does not change the cache
+        result.put("b", "B");
+
+        Map<Object, Object> first = (Map<Object, Object>) ScriptResultCache.get("random", SCRIPT,
+                Collections.emptyMap());
+        assertEquals(Collections.singletonMap("a", "A"), first);
+        first.remove("a");
+
+        assertEquals(Collections.singletonMap("a", "A"), ScriptResultCache.get("random", SCRIPT,
+                Collections.emptyMap()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCallersDoNotShareTheCachedList() {
+        List<Object> result = new ArrayList<>(List.of("a", "b"));
+        ScriptResultCache.put("random", SCRIPT, Collections.emptyMap(), result, 60);
+
+        ((List<Object>) ScriptResultCache.get("random", SCRIPT, Collections.emptyMap())).clear();
+        assertEquals(List.of("a", "b"), ScriptResultCache.get("random", SCRIPT, Collections.emptyMap()));
+    }
+
+    @Test
+    void testResultOfAnotherScriptIsIgnored() {
+        ScriptResultCache.put("random", SCRIPT, Collections.emptyMap(), "result", 60);
+        assertNull(ScriptResultCache.get("random", new Object(), Collections.emptyMap()));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link SingleFlight}.
+ */
+class TestSingleFlight {
+
+    private static final Object SCRIPT = new Object();
+
+    @Test
+    void testConcurrentIdenticalEvaluationsAreShared() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger evaluations = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(() -> SingleFlight.evaluate("random", SCRIPT, Map.of("a", "1"),
+                    "user", () -> {
+                        evaluations.incrementAndGet();
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return "result";
+                    }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            long shared = SingleFlight.getShared();
+            Future<Object> second = executor.submit(() -> SingleFlight.evaluate("random", SCRIPT, Map.of("a", 1),
+                    "user", () -> {
+                        evaluations.incrementAndGet();
+                        return "other";
+                    }));
+            while (SingleFlight.getShared() == shared) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertEquals("result", first.get(10, TimeUnit.SECONDS));
+            assertEquals("result", second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, evaluations.get());
+            assertEquals(0, SingleFlight.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testDifferentKeysAreNotShared() {
+        assertEquals("a", SingleFlight.evaluate("random", SCRIPT, Map.of(), "user", () -> "a"));
+        assertEquals("b", SingleFlight.evaluate("random", SCRIPT, Map.of(), "user", () -> "b"));
+        assertEquals("c", SingleFlight.evaluate("random", SCRIPT, Map.of(), "other-user", () -> "c"));
+        assertEquals("d", SingleFlight.evaluate("random", new Object(), Map.of(), "user", () -> "d"));
+    }
+
+    @Test
+    void testFailureIsNotKept() {
+        assertThrows(IllegalStateException.class, () -> SingleFlight.evaluate("random", SCRIPT, Map.of(), null,
+                () -> {
+                    throw new IllegalStateException();
+                }));
+        assertEquals("ok", SingleFlight.evaluate("random", SCRIPT, Map.of(), null, () -> "ok"));
+    }
+}
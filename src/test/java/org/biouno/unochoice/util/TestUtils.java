@@ -26,13 +26,23 @@ package org.biouno.unochoice.util;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
 
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParameterDefinition;
+import hudson.model.StringParameterDefinition;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
+import hudson.tasks.BuildWrapper;
+import hudson.tasks.BuildWrapperDescriptor;
 import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
 
 /**
@@ -144,6 +154,43 @@ class TestUtils {
         assertEquals("a", escaped);
     }
 
+    @Test
+    void testParseSuffixes(JenkinsRule j) {
+        SuffixedValue parsed = Utils.parseSuffixes("a:selected:disabled");
+        assertEquals("a", parsed.getValue());
+        assertTrue(parsed.isSelected());
+        assertTrue(parsed.isDisabled());
+
+        parsed = Utils.parseSuffixes("a:disabled");
+        assertEquals("a", parsed.getValue());
+        assertFalse(parsed.isSelected());
+        assertTrue(parsed.isDisabled());
+
+        // a repeated suffix is only removed once
+        parsed = Utils.parseSuffixes("a:selected:selected");
+        assertEquals("a:selected", parsed.getValue());
+        assertTrue(parsed.isSelected());
+        assertFalse(parsed.isDisabled());
+
+        // values without suffixes are not copied
+        final String text = "a:selected example";
+        parsed = Utils.parseSuffixes(text);
+        assertSame(text, parsed.getValue());
+        assertFalse(parsed.isSelected());
+
+        parsed = Utils.parseSuffixes(":selected");
+        assertEquals("", parsed.getValue());
+        assertTrue(parsed.isSelected());
+
+        parsed = Utils.parseSuffixes(null);
+        assertEquals("", parsed.getValue());
+        assertFalse(parsed.isSelected());
+        assertFalse(parsed.isDisabled());
+
+        parsed = Utils.parseSuffixes(42);
+        assertEquals("42", parsed.getValue());
+    }
+
     @Test
     void testRandomParameterName(JenkinsRule j) {
         String paramName = Utils.createRandomParameterName("test", "param");
@@ -174,4 +221,106 @@ class TestUtils {
         assertEquals("20:13:13", map.values().iterator().next());
     }
 
+    @Test
+    void testGlobalNodePropertiesSnapshot(JenkinsRule j) throws Exception {
+        EnvironmentVariablesNodeProperty envVarsNodeProp = new EnvironmentVariablesNodeProperty(
+                new EnvironmentVariablesNodeProperty.Entry("time", "20:13:13"));
+        j.jenkins.getGlobalNodeProperties().add(envVarsNodeProp);
+        Map<String, Object> map = Utils.getGlobalNodeProperties();
+        // shared by reference, and read-only
+        assertSame(map, Utils.getGlobalNodeProperties());
+        assertThrows(UnsupportedOperationException.class, () -> map.put("time", "00:00:00"));
+
+        // rebuilt when the global configuration is saved
+        envVarsNodeProp.getEnvVars().put("time", "21:14:14");
+        j.jenkins.save();
+        assertEquals("21:14:14", Utils.getGlobalNodeProperties().get("time"));
+
+        // and when the properties are replaced
+        j.jenkins.getGlobalNodeProperties().replace(new EnvironmentVariablesNodeProperty(
+                new EnvironmentVariablesNodeProperty.Entry("time", "22:15:15")));
+        assertEquals("22:15:15", Utils.getGlobalNodeProperties().get("time"));
+    }
+
+    @Test
+    void testGetBuildWrapperParameterDefinitions(JenkinsRule j) throws Exception {
+        ParameterDefinition a = new StringParameterDefinition("A", "a");
+        ParameterDefinition b = new StringParameterDefinition("B", "b");
+        ParameterDefinition c = new StringParameterDefinition("C", "c");
+        ParameterDefinition d = new StringParameterDefinition("D", "d");
+        GetterWrapper getterWrapper = new GetterWrapper(Arrays.asList(a, b));
+        FieldWrapper fieldWrapper = new FieldWrapper();
+        fieldWrapper.setParameter(c);
+        ArrayWrapper arrayWrapper = new ArrayWrapper(new ParameterDefinition[] {d});
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.getBuildWrappersList().add(getterWrapper);
+        project.getBuildWrappersList().add(fieldWrapper);
+        project.getBuildWrappersList().add(arrayWrapper);
+
+        // the classes and the field are not public, and their values are read anyway
+        Map<BuildWrapper, List<ParameterDefinition>> definitions = Utils.getBuildWrapperParameterDefinitions(project);
+        assertEquals(Arrays.asList(getterWrapper, fieldWrapper, arrayWrapper),
+                Arrays.asList(definitions.keySet().toArray()));
+        assertEquals(Arrays.asList(a, b), definitions.get(getterWrapper));
+        assertEquals(Collections.singletonList(c), definitions.get(fieldWrapper));
+        assertEquals(Collections.singletonList(d), definitions.get(arrayWrapper));
+        assertEquals(Arrays.asList(a, b, c, d), Utils.getAllParameterDefinitions(project));
+    }
+
+    static class GetterWrapper extends BuildWrapper {
+        private final List<ParameterDefinition> parameters;
+
+        GetterWrapper(List<ParameterDefinition> parameters) {
+            this.parameters = parameters;
+        }
+
+        public List<ParameterDefinition> getParameters() {
+            return parameters;
+        }
+
+        @TestExtension("testGetBuildWrapperParameterDefinitions")
+        public static class DescriptorImpl extends BuildWrapperDescriptor {
+            @Override
+            public boolean isApplicable(AbstractProject<?, ?> item) {
+                return true;
+            }
+        }
+    }
+
+    static class FieldWrapper extends BuildWrapper {
+        // no getter, read from the field
+        private ParameterDefinition parameter;
+
+        public void setParameter(ParameterDefinition parameter) {
+            this.parameter = parameter;
+        }
+
+        @TestExtension("testGetBuildWrapperParameterDefinitions")
+        public static class DescriptorImpl extends BuildWrapperDescriptor {
+            @Override
+            public boolean isApplicable(AbstractProject<?, ?> item) {
+                return true;
+            }
+        }
+    }
+
+    static class ArrayWrapper extends BuildWrapper {
+        private final ParameterDefinition[] parameters;
+
+        ArrayWrapper(ParameterDefinition[] parameters) {
+            this.parameters = parameters;
+        }
+
+        public ParameterDefinition[] getParameters() {
+            return parameters;
+        }
+
+        @TestExtension("testGetBuildWrapperParameterDefinitions")
+        public static class DescriptorImpl extends BuildWrapperDescriptor {
+            @Override
+            public boolean isApplicable(AbstractProject<?, ?> item) {
+                return true;
+            }
+        }
+    }
 }
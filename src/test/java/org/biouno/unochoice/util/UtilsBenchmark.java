@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the decoding of the {@code :selected} and {@code :disabled} suffixes, done for every choice when
+ * rendering parameters. {@code escapeSelectedAndDisabledWithRegex} is the implementation using regular
+ * expressions, kept for comparison.
+ */
+@State(Scope.Benchmark)
+public class UtilsBenchmark {
+
+    private final String[] values = {
+        "release/1.0",
+        "main:selected",
+        "legacy:disabled",
+        "archived:selected:disabled",
+        "archived:disabled:selected",
+        "a value without suffixes, but long enough to be scanned"
+    };
+
+    @Benchmark
+    public void escapeSelectedAndDisabled(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(Utils.escapeSelectedAndDisabled(value));
+        }
+    }
+
+    @Benchmark
+    public void escapeSelectedAndDisabledWithRegex(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(escapeWithRegex(value));
+        }
+    }
+
+    @Benchmark
+    public void parseSuffixes(Blackhole blackhole) {
+        for (String value : values) {
+            final SuffixedValue parsed = Utils.parseSuffixes(value);
+            blackhole.consume(parsed.getValue());
+            blackhole.consume(parsed.isSelected());
+            blackhole.consume(parsed.isDisabled());
+        }
+    }
+
+    private static String escapeWithRegex(String text) {
+        if (text.endsWith(":disabled") || text.endsWith(":disabled:selected")) {
+            text = text.replaceAll(":disabled$", "").replaceAll(":disabled:selected$", ":selected");
+        }
+        if (text.endsWith(":selected") || text.endsWith(":selected:disabled")) {
+            text = text.replaceAll(":selected$", "").replaceAll(":selected:disabled$", ":disabled");
+        }
+        return text;
+    }
+}